@@ -0,0 +1,57 @@
+package org.embulk.util.aws.credentials.sdk2;
+
+import org.embulk.util.aws.credentials.AsyncRefreshingAwsCredentialsProvider;
+import org.embulk.util.aws.credentials.AwsCredentials;
+import org.embulk.util.aws.credentials.AwsCredentialsTask;
+import org.embulk.util.aws.credentials.AwsCredentialsTaskWithPrefix;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+
+/**
+ * A utility class to generate {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} of AWS SDK for Java 2.x
+ * from Embulk's task-defining interface, in the same way as {@link AwsCredentials}.
+ *
+ * <p>Providers of expiring credentials, such as {@code "assume_role"} and {@code "instance"}, always refresh in background as
+ * {@code refresh_mode: async} with {@code stale_while_revalidate: true}, regardless of the task definition. Providers of any
+ * {@code auth_method}, including {@code "default"}, start loading the first credentials in background as soon as created.
+ * Resolving credentials then returns the latest credentials in memory without waiting for STS or else. It fits non-blocking
+ * clients, such as {@code S3AsyncClient}, which resolve credentials in their event loops.
+ *
+ * <p>Resolving credentials still blocks in the cases listed in {@link AsyncRefreshingAwsCredentialsProvider}: before the first
+ * credentials are loaded, after they have expired because background refreshes have kept failing, and when a profile file has
+ * been modified. Clients which must never block should resolve credentials once, outside their event loops, before sending
+ * requests.
+ *
+ * <p>The returned providers implement {@link software.amazon.awssdk.utils.SdkAutoCloseable}, and must be closed when finished
+ * to stop their background refreshes.
+ */
+public abstract class AwsCredentialsSdk2 {
+    private AwsCredentialsSdk2() {
+        // No instantiation.
+    }
+
+    /**
+     * Creates {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} from entries prefixed with {@code "aws_"}
+     * in task definition.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} created
+     */
+    public static AwsCredentialsProvider getAwsCredentialsProvider(final AwsCredentialsTaskWithPrefix task) {
+        return prefetched(AwsCredentials.getAsyncRefreshingAWSCredentialsProvider(task));
+    }
+
+    /**
+     * Creates {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} from entries in task definition.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} created
+     */
+    public static AwsCredentialsProvider getAwsCredentialsProvider(final AwsCredentialsTask task) {
+        return prefetched(AwsCredentials.getAsyncRefreshingAWSCredentialsProvider(task));
+    }
+
+    private static AwsCredentialsProvider prefetched(final AsyncRefreshingAwsCredentialsProvider provider) {
+        provider.prefetch();
+        return new Sdk2CredentialsProvider(provider);
+    }
+}
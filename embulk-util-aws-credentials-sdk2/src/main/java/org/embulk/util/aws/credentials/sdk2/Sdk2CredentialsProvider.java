@@ -0,0 +1,75 @@
+package org.embulk.util.aws.credentials.sdk2;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import org.embulk.util.aws.credentials.AsyncRefreshingAwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+/**
+ * {@link software.amazon.awssdk.auth.credentials.AwsCredentialsProvider} which serves credentials of
+ * {@link org.embulk.util.aws.credentials.AsyncRefreshingAwsCredentialsProvider}.
+ *
+ * <p>The credentials are converted once per credentials loaded, not per request.
+ */
+final class Sdk2CredentialsProvider implements AwsCredentialsProvider, SdkAutoCloseable {
+    Sdk2CredentialsProvider(final AsyncRefreshingAwsCredentialsProvider provider) {
+        this.provider = provider;
+        this.converted = null;
+    }
+
+    @Override
+    public AwsCredentials resolveCredentials() {
+        final AWSCredentials credentials = this.provider.getCredentials();
+        final Converted converted = this.converted;
+        if (converted != null && converted.source == credentials) {
+            return converted.credentials;
+        }
+        final Converted newlyConverted = new Converted(credentials, convert(credentials));
+        this.converted = newlyConverted;
+        return newlyConverted.credentials;
+    }
+
+    @Override
+    public void close() {
+        this.provider.close();
+    }
+
+    @Override
+    public String toString() {
+        return "Sdk2CredentialsProvider(" + this.provider + ")";
+    }
+
+    private static AwsCredentials convert(final AWSCredentials credentials) {
+        if (credentials instanceof AnonymousAWSCredentials) {
+            return AnonymousCredentialsProvider.create().resolveCredentials();
+        }
+        if (credentials instanceof AWSSessionCredentials) {
+            return AwsSessionCredentials.create(
+                    credentials.getAWSAccessKeyId(),
+                    credentials.getAWSSecretKey(),
+                    ((AWSSessionCredentials) credentials).getSessionToken());
+        }
+        return AwsBasicCredentials.create(credentials.getAWSAccessKeyId(), credentials.getAWSSecretKey());
+    }
+
+    private static final class Converted {
+        private Converted(final AWSCredentials source, final AwsCredentials credentials) {
+            this.source = source;
+            this.credentials = credentials;
+        }
+
+        private final AWSCredentials source;
+        private final AwsCredentials credentials;
+    }
+
+    private final AsyncRefreshingAwsCredentialsProvider provider;
+
+    // Racing threads may convert the same credentials twice, which is harmless.
+    private volatile Converted converted;
+}
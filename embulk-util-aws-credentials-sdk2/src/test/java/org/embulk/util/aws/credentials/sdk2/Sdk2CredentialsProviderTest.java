@@ -0,0 +1,96 @@
+package org.embulk.util.aws.credentials.sdk2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import org.embulk.util.aws.credentials.AsyncRefreshingAwsCredentialsProvider;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+public class Sdk2CredentialsProviderTest {
+    @Test
+    public void testConvertsBasicCredentials() {
+        this.source.credentials = new BasicAWSCredentials("AKID", "secret");
+
+        final AwsCredentials credentials = this.provider.resolveCredentials();
+        assertTrue(credentials instanceof AwsBasicCredentials);
+        assertEquals("AKID", credentials.accessKeyId());
+        assertEquals("secret", credentials.secretAccessKey());
+    }
+
+    @Test
+    public void testConvertsSessionCredentials() {
+        this.source.credentials = new BasicSessionCredentials("ASIA", "secret", "token");
+
+        final AwsCredentials credentials = this.provider.resolveCredentials();
+        assertTrue(credentials instanceof AwsSessionCredentials);
+        assertEquals("ASIA", credentials.accessKeyId());
+        assertEquals("secret", credentials.secretAccessKey());
+        assertEquals("token", ((AwsSessionCredentials) credentials).sessionToken());
+    }
+
+    @Test
+    public void testConvertsAnonymousCredentials() {
+        this.source.credentials = new AnonymousAWSCredentials();
+
+        final AwsCredentials credentials = this.provider.resolveCredentials();
+        assertNull(credentials.accessKeyId());
+        assertNull(credentials.secretAccessKey());
+    }
+
+    @Test
+    public void testConvertsOncePerCredentials() {
+        this.source.credentials = new BasicSessionCredentials("ASIA1", "secret1", "token1");
+        final AwsCredentials first = this.provider.resolveCredentials();
+        assertSame(first, this.provider.resolveCredentials());
+
+        // Refreshed in the source.
+        this.source.credentials = new BasicSessionCredentials("ASIA2", "secret2", "token2");
+        final AwsCredentials refreshed = this.provider.resolveCredentials();
+        assertEquals("ASIA2", refreshed.accessKeyId());
+        assertEquals("token2", ((AwsSessionCredentials) refreshed).sessionToken());
+        assertSame(refreshed, this.provider.resolveCredentials());
+    }
+
+    @Test
+    public void testClosesSource() {
+        assertFalse(this.source.closed);
+        this.provider.close();
+        assertTrue(this.source.closed);
+    }
+
+    private static final class FakeProvider implements AsyncRefreshingAwsCredentialsProvider {
+        @Override
+        public AWSCredentials getCredentials() {
+            return this.credentials;
+        }
+
+        @Override
+        public void refresh() {
+        }
+
+        @Override
+        public void prefetch() {
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+
+        private volatile AWSCredentials credentials;
+        private volatile boolean closed;
+    }
+
+    private final FakeProvider source = new FakeProvider();
+    private final Sdk2CredentialsProvider provider = new Sdk2CredentialsProvider(this.source);
+}
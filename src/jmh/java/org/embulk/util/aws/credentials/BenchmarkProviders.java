@@ -0,0 +1,133 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Creates providers of every authentication method for benchmarks, backed by {@link LocalCredentialsServer} and local files.
+ *
+ * <p>Methods which read credentials from the JVM, such as {@code properties} and {@code default}, and the STS clients which
+ * sign {@code AssumeRole} get dummy credentials from the system properties {@code aws.accessKeyId} and {@code aws.secretKey}.
+ * Environment variables cannot be set from Java, then {@code env} needs dummy {@code AWS_ACCESS_KEY_ID} and
+ * {@code AWS_SECRET_ACCESS_KEY} set by the caller.
+ */
+final class BenchmarkProviders implements Closeable {
+    private BenchmarkProviders(final LocalCredentialsServer server, final Path directory) {
+        this.server = server;
+        this.directory = directory;
+    }
+
+    static BenchmarkProviders start(final Duration lifetime) throws IOException {
+        System.setProperty("aws.accessKeyId", ACCESS_KEY_ID);
+        System.setProperty("aws.secretKey", SECRET_ACCESS_KEY);
+
+        final Path directory = Files.createTempDirectory("embulk-aws-credentials-benchmark");
+        Files.write(directory.resolve("credentials"), ("[default]\n"
+                + "aws_access_key_id = " + ACCESS_KEY_ID + "\n"
+                + "aws_secret_access_key = " + SECRET_ACCESS_KEY + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("web-identity-token"), "benchmark-web-identity-token\n".getBytes(StandardCharsets.UTF_8));
+        return new BenchmarkProviders(LocalCredentialsServer.start(lifetime), directory);
+    }
+
+    /**
+     * Creates a provider of the authentication method as {@link AwsCredentials#getAWSCredentialsProvider(AwsCredentialsTask)}.
+     *
+     * <p>{@code container} is created directly with the endpoint of the stub because its endpoint comes only from environment
+     * variables.
+     */
+    AWSCredentialsProvider create(final String authMethod, final String refreshMode, final int refreshAheadSeconds) {
+        final AwsCredentialsTask task = this.task(authMethod, refreshMode, refreshAheadSeconds);
+        if ("container".equals(authMethod)) {
+            return new ContainerCredentialsProvider(
+                    this.server.getContainerEndpoint(), MetadataHttpClient.of(task, ""), RefreshSettings.of(task, ""));
+        }
+        return AwsCredentials.getAWSCredentialsProvider(task);
+    }
+
+    AwsCredentialsTask task(final String authMethod, final String refreshMode, final int refreshAheadSeconds) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", authMethod);
+        values.put("refresh_mode", refreshMode);
+        values.put("refresh_ahead_seconds", refreshAheadSeconds);
+        values.put("refresh_jitter_seconds", 0);
+        switch (authMethod) {
+        case "basic":
+            values.put("access_key_id", ACCESS_KEY_ID);
+            values.put("secret_access_key", SECRET_ACCESS_KEY);
+            break;
+        case "session":
+            values.put("access_key_id", ACCESS_KEY_ID);
+            values.put("secret_access_key", SECRET_ACCESS_KEY);
+            values.put("session_token", SESSION_TOKEN);
+            break;
+        case "env":
+            if (System.getenv("AWS_ACCESS_KEY_ID") == null || System.getenv("AWS_SECRET_ACCESS_KEY") == null) {
+                throw new IllegalStateException("Set dummy AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY to benchmark 'env'.");
+            }
+            break;
+        case "instance":
+        case "default":
+            values.put("instance_metadata_endpoint", this.server.getInstanceMetadataEndpoint());
+            break;
+        case "profile":
+            values.put("profile_file", this.directory.resolve("credentials").toString());
+            break;
+        case "credential_process":
+            values.put("credential_process", "echo '{\"Version\": 1, \"AccessKeyId\": \"" + ACCESS_KEY_ID
+                    + "\", \"SecretAccessKey\": \"" + SECRET_ACCESS_KEY + "\"}'");
+            break;
+        case "assume_role":
+            values.put("account_id", ACCOUNT_ID);
+            values.put("role_name", "embulk-benchmark");
+            values.put("sts_endpoint", this.server.getStsEndpoint());
+            break;
+        case "web_identity":
+            values.put("account_id", ACCOUNT_ID);
+            values.put("role_name", "embulk-benchmark");
+            values.put("sts_endpoint", this.server.getStsEndpoint());
+            values.put("web_identity_token_file", this.directory.resolve("web-identity-token").toString());
+            break;
+        default:
+            break;
+        }
+        return TestTasks.of(values);
+    }
+
+    /**
+     * Returns the number of credentials issued by the stub so far.
+     */
+    long getIssued() {
+        return this.server.getIssued();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        try (final Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    static void closeProvider(final AWSCredentialsProvider provider) throws IOException {
+        if (provider instanceof Closeable) {
+            ((Closeable) provider).close();
+        }
+    }
+
+    static final String ACCESS_KEY_ID = "AKIAEMBULKBENCHMARK";
+    static final String SECRET_ACCESS_KEY = "embulk-benchmark-secret-access-key";
+    static final String SESSION_TOKEN = "embulk-benchmark-session-token";
+    static final String ACCOUNT_ID = "000000000000";
+
+    private final LocalCredentialsServer server;
+    private final Path directory;
+}
@@ -0,0 +1,77 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks {@link AWSCredentialsProvider#getCredentials()} of a provider shared among 1 to 64 threads, as tasks in a
+ * process share a provider, while its credentials are valid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GetCredentialsBenchmark {
+    @Param({
+            "basic", "env", "instance", "container", "profile", "credential_process", "properties", "anonymous", "session",
+            "assume_role", "web_identity", "default"})
+    public String authMethod;
+
+    /**
+     * Creates a provider, and loads its first credentials so that only the hot path is measured.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.providers = BenchmarkProviders.start(Duration.ofHours(1));
+        this.provider = this.providers.create(this.authMethod, "sync", 300);
+        this.provider.getCredentials();
+    }
+
+    /**
+     * Closes the provider and the stubs.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkProviders.closeProvider(this.provider);
+        this.providers.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AWSCredentials oneThread() {
+        return this.provider.getCredentials();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AWSCredentials fourThreads() {
+        return this.provider.getCredentials();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AWSCredentials sixteenThreads() {
+        return this.provider.getCredentials();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public AWSCredentials sixtyFourThreads() {
+        return this.provider.getCredentials();
+    }
+
+    private BenchmarkProviders providers;
+    private AWSCredentialsProvider provider;
+}
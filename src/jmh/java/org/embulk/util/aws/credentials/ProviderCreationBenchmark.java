@@ -0,0 +1,54 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks creating, and closing, a provider of every authentication method, without getting credentials.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProviderCreationBenchmark {
+    @Param({
+            "basic", "env", "instance", "container", "profile", "credential_process", "properties", "anonymous", "session",
+            "assume_role", "web_identity", "default"})
+    public String authMethod;
+
+    /**
+     * Starts the stubs, and checks that the authentication method can be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.providers = BenchmarkProviders.start(Duration.ofHours(1));
+        this.providers.task(this.authMethod, "sync", 300);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.providers.close();
+    }
+
+    /**
+     * Creates a provider, and closes it not to leak its resources, such as a lease of an STS client, over iterations.
+     */
+    @Benchmark
+    public AWSCredentialsProvider create() throws IOException {
+        final AWSCredentialsProvider provider = this.providers.create(this.authMethod, "sync", 300);
+        BenchmarkProviders.closeProvider(provider);
+        return provider;
+    }
+
+    private BenchmarkProviders providers;
+}
@@ -0,0 +1,65 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks {@link AWSCredentialsProvider#getCredentials()} by 16 threads while the credentials are refreshed all the time.
+ *
+ * <p>The stubs issue credentials which expire in {@value #LIFETIME_SECONDS} seconds, always within
+ * {@code refresh_ahead_seconds}, but not within {@link RefreshableCredentialsProvider#BLOCKING_REFRESH_MARGIN}. Then, one
+ * thread, or the background thread in {@code async} mode, refreshes them again and again, while the others keep reading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RefreshUnderLoadBenchmark {
+    @Param({"assume_role", "instance", "container", "web_identity"})
+    public String authMethod;
+
+    @Param({"sync", "async"})
+    public String refreshMode;
+
+    /**
+     * Creates a provider with short-lived credentials from the stubs.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.providers = BenchmarkProviders.start(Duration.ofSeconds(LIFETIME_SECONDS));
+        this.provider = this.providers.create(this.authMethod, this.refreshMode, LIFETIME_SECONDS * 2);
+        this.provider.getCredentials();
+    }
+
+    /**
+     * Closes the provider and the stubs.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkProviders.closeProvider(this.provider);
+        this.providers.close();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AWSCredentials getCredentials() {
+        return this.provider.getCredentials();
+    }
+
+    private static final int LIFETIME_SECONDS = 120;
+
+    private BenchmarkProviders providers;
+    private AWSCredentialsProvider provider;
+}
@@ -0,0 +1,43 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+
+/**
+ * {@code auth_method: agent}, with {@link AgentCredentialsProvider}.
+ *
+ * <p>It accepts all the options. Options for {@code agent_source_auth_method} are validated by the source method, which
+ * accepts {@link #AGENT_OPTIONS} in addition to its own.
+ */
+final class AgentAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String agentSourceAuthMethodOption = prefix + "agent_source_auth_method";
+        final String sourceAuthMethod = AuthMethods.require(task.getAgentSourceAuthMethod(), "'" + agentSourceAuthMethodOption + "'");
+        if (!AgentCredentialsProvider.SOURCE_AUTH_METHODS.contains(sourceAuthMethod)) {
+            throw new ConfigException(String.format("Unsupported %s '%s'. Supported methods are %s.",
+                        agentSourceAuthMethodOption, sourceAuthMethod, String.join(", ", AgentCredentialsProvider.SOURCE_AUTH_METHODS)));
+        }
+        final FileCredentialsCache sharedCache = new FileCredentialsCache(
+                task.getAgentDir().map(dir -> Paths.get(dir)).orElse(AgentCredentialsProvider.DEFAULT_DIRECTORY));
+        // The source is refreshed only through the agent, then it does not refresh by itself.
+        final RefreshableCredentialsProvider source = (RefreshableCredentialsProvider) AuthMethods.create(
+                prefix, task, sourceAuthMethod, AGENT_OPTIONS, refreshSettings.withAsync(false));
+        return new AgentCredentialsProvider(
+                sourceAuthMethod, source, sharedCache, CredentialsConfigKey.of(task).fingerprint(), refreshSettings);
+    }
+
+    static final Set<AuthOption> AGENT_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.AGENT_SOURCE_AUTH_METHOD, AuthOption.AGENT_DIR));
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.allOf(AuthOption.class));
+}
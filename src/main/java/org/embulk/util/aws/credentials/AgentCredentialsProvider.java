@@ -0,0 +1,102 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} which shares credentials among Embulk processes on the host through a
+ * {@link FileCredentialsCache}, refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>Processes read the shared credentials while they have enough lifetime. When the credentials need refreshing, the first
+ * process which locks the entry acts as the agent. It loads new credentials from its source provider, such as AssumeRole, and
+ * writes them for the others. The others wait for the lock, and then read the new credentials. Only one process on the host
+ * calls STS or the EC2 instance metadata service per refresh, and processes started later get credentials without any network
+ * call.
+ */
+final class AgentCredentialsProvider extends RefreshableCredentialsProvider {
+    AgentCredentialsProvider(
+            final String sourceAuthMethod,
+            final RefreshableCredentialsProvider source,
+            final FileCredentialsCache sharedCache,
+            final String key,
+            final RefreshSettings settings) {
+        super("agent of " + sourceAuthMethod + " " + key, settings);
+        this.source = source;
+        this.sharedCache = sharedCache;
+        this.key = key;
+        this.sourceLoaded = false;
+
+        // Shared credentials must outlive the refresh window. Otherwise, they would be read from the file again right away.
+        this.minRemaining = settings.getRefreshAhead()
+                .plus(settings.getRefreshJitter())
+                .plus(BLOCKING_REFRESH_MARGIN);
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        final Optional<ExpiringCredentials> shared = this.readShared();
+        if (shared.isPresent()) {
+            log.debug("Reusing AWS credentials shared in {}.", this.sharedCache);
+            return shared.get();
+        }
+        return this.sharedCache.withLock(this.key, () -> {
+            final Optional<ExpiringCredentials> refreshed = this.readShared();
+            if (refreshed.isPresent()) {
+                // Another process has refreshed them while waiting for the lock.
+                log.debug("Reusing AWS credentials refreshed by another process in {}.", this.sharedCache);
+                return refreshed.get();
+            }
+            final ExpiringCredentials loaded = this.loadSource();
+            if (loaded.getCredentials() instanceof AWSSessionCredentials && loaded.getExpiration().isPresent()) {
+                this.sharedCache.write(this.key, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    void closeSource() {
+        this.source.close();
+    }
+
+    private Optional<ExpiringCredentials> readShared() {
+        final Optional<ExpiringCredentials> shared = this.sharedCache.read(this.key);
+        if (shared.isPresent() && !shared.get().expiresWithin(this.minRemaining, Instant.now())) {
+            return shared;
+        }
+        return Optional.empty();
+    }
+
+    private ExpiringCredentials loadSource() {
+        if (this.sourceLoaded) {
+            // The current credentials of the source are the ones which have come close to expiring.
+            this.source.refresh();
+        }
+        this.sourceLoaded = true;
+        return this.source.getExpiringCredentials();
+    }
+
+    static final List<String> SOURCE_AUTH_METHODS = Collections.unmodifiableList(Arrays.asList(
+            "assume_role", "web_identity", "instance", "container", "credential_process"));
+
+    static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".embulk", "aws-credentials-agent");
+
+    private static final Logger log = LoggerFactory.getLogger(AgentCredentialsProvider.class);
+
+    private final RefreshableCredentialsProvider source;
+    private final FileCredentialsCache sharedCache;
+    private final String key;
+    private final Duration minRemaining;
+
+    // Accessed only in load(), which is never called concurrently.
+    private boolean sourceLoaded;
+}
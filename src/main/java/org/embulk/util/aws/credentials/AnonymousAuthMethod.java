@@ -0,0 +1,35 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * {@code auth_method: anonymous}.
+ */
+final class AnonymousAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        return createProvider();
+    }
+
+    static AWSCredentialsProvider createProvider() {
+        final CredentialsMetrics metrics = CredentialsMetrics.of("anonymous");
+        return new AWSCredentialsProvider() {
+            public AWSCredentials getCredentials() {
+                metrics.recordGetCredentials(true);
+                return new AnonymousAWSCredentials();
+            }
+
+            public void refresh() {
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code auth_method: assume_role}, with AWS STS AssumeRole, through {@code role_chain} if any.
+ *
+ * <p>It requires {@code com.amazonaws:aws-java-sdk-sts}.
+ */
+final class AssumeRoleAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String accountId = AuthMethods.require(task.getAccountId(),
+                "'" + prefix + "account_id'");
+        final String roleName = AuthMethods.require(task.getRoleName(),
+                "'" + prefix + "role_name'");
+        final String arn = AuthMethods.roleArn(task, accountId, roleName);
+
+        if (task.getExternalId().isPresent()) {
+            log.info("ExternalId is specified with AssumeRole.");
+        } else {
+            log.info("ExternalId is not specified for AssumeRole.");
+        }
+        if (task.getCredentialsCacheMinRemainingSeconds() < 0) {
+            throw new ConfigException("'" + prefix + "credentials_cache_min_remaining_seconds' must not be negative.");
+        }
+        final SecurityTokenServiceClients.Settings stsSettings = SecurityTokenServiceClients.Settings.of(task, prefix);
+        final Optional<FileCredentialsCache> fileCache = task.getCredentialsCacheDir().map(dir -> new FileCredentialsCache(Paths.get(dir)));
+        final Duration fileCacheMinRemaining = Duration.ofSeconds(task.getCredentialsCacheMinRemainingSeconds());
+
+        final List<String> hopArns = new ArrayList<>();
+        for (int i = 0; i < task.getRoleChain().size(); i++) {
+            final AwsRoleHop hop = task.getRoleChain().get(i);
+            final String hopOption = prefix + "role_chain[" + i + "]";
+            final String hopAccountId = AuthMethods.require(Optional.ofNullable(hop.getAccountId()), "'account_id' in '" + hopOption + "'");
+            final String hopRoleName = AuthMethods.require(Optional.ofNullable(hop.getRoleName()), "'role_name' in '" + hopOption + "'");
+            hopArns.add(AuthMethods.roleArn(task, hopAccountId, hopRoleName));
+        }
+
+        // Each intermediate role is assumed with credentials of the previous one, and cached in its own provider.
+        Optional<AssumeRoleCredentialsProvider> previousHop = Optional.empty();
+        try {
+            for (int i = 0; i < task.getRoleChain().size(); i++) {
+                final AwsRoleHop hop = task.getRoleChain().get(i);
+                previousHop = Optional.of(new AssumeRoleCredentialsProvider(
+                        SecurityTokenServiceClients.acquire(stsSettings),
+                        hopArns.get(i),
+                        Optional.ofNullable(hop.getSessionName()).orElse(task.getSessionName()),
+                        Optional.ofNullable(hop.getExternalId()),
+                        Optional.ofNullable(hop.getDurationInSeconds()).orElse(task.getDurationInSeconds()),
+                        refreshSettings,
+                        fileCache,
+                        fileCacheMinRemaining,
+                        previousHop));
+            }
+            return new AssumeRoleCredentialsProvider(
+                    SecurityTokenServiceClients.acquire(stsSettings),
+                    arn,
+                    task.getSessionName(),
+                    task.getExternalId(),
+                    task.getDurationInSeconds(),
+                    refreshSettings,
+                    fileCache,
+                    fileCacheMinRemaining,
+                    previousHop);
+        } catch (final RuntimeException ex) {
+            // Closing the last hop built so far closes all the hops before it, and releases their STS clients.
+            if (previousHop.isPresent()) {
+                previousHop.get().close();
+            }
+            throw ex;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AssumeRoleAuthMethod.class);
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.ACCOUNT_ID,
+            AuthOption.ROLE_NAME,
+            AuthOption.EXTERNAL_ID,
+            AuthOption.CREDENTIALS_CACHE_DIR,
+            AuthOption.ROLE_CHAIN,
+            AuthOption.STS_ENDPOINT,
+            AuthOption.STS_REGION));
+}
@@ -0,0 +1,125 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSSessionCredentialsProvider;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link com.amazonaws.auth.AWSSessionCredentialsProvider} for AssumeRole, refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>With {@link FileCredentialsCache}, it reuses credentials assumed by earlier Embulk runs while they have enough lifetime.
+ * They are cached per caller and per STS endpoint and region as well as per role, so that credentials assumed by one
+ * caller, or from one STS endpoint, are never reused for another.
+ *
+ * <p>In a role chain, each role has its own provider which calls STS with the provider of the previous role. Each of them caches
+ * and refreshes its credentials independently so that refreshing the last role does not assume the previous roles again.
+ */
+final class AssumeRoleCredentialsProvider extends RefreshableCredentialsProvider implements AWSSessionCredentialsProvider {
+    AssumeRoleCredentialsProvider(
+            final SecurityTokenServiceClients.Lease sts,
+            final String roleArn,
+            final String sessionName,
+            final Optional<String> externalId,
+            final int durationInSeconds,
+            final RefreshSettings settings,
+            final Optional<FileCredentialsCache> fileCache,
+            final Duration fileCacheMinRemaining,
+            final Optional<AssumeRoleCredentialsProvider> previousHop) {
+        super("AssumeRole " + roleArn, settings);
+        this.sts = sts;
+        this.roleArn = roleArn;
+        this.sessionName = sessionName;
+        this.externalId = externalId;
+        this.durationInSeconds = durationInSeconds;
+        this.fileCache = fileCache;
+        this.previousHop = previousHop;
+
+        // Cached credentials must outlive the refresh window. Otherwise, they would be read from the file again right away.
+        final Duration refreshWindow = settings.getRefreshAhead()
+                .plus(settings.getRefreshJitter())
+                .plus(BLOCKING_REFRESH_MARGIN);
+        this.fileCacheMinRemaining = fileCacheMinRemaining.compareTo(refreshWindow) > 0 ? fileCacheMinRemaining : refreshWindow;
+    }
+
+    @Override
+    public AWSSessionCredentials getCredentials() {
+        return (AWSSessionCredentials) super.getCredentials();
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        if (!this.fileCache.isPresent()) {
+            return this.assumeRole();
+        }
+        final String fileCacheKey = this.fileCacheKey();
+        final Optional<ExpiringCredentials> cached = this.fileCache.get().read(fileCacheKey);
+        if (cached.isPresent() && !cached.get().expiresWithin(this.fileCacheMinRemaining, Instant.now())) {
+            log.debug("Reusing AssumeRole credentials for {} from {}.", this.roleArn, this.fileCache.get());
+            return cached.get();
+        }
+        final ExpiringCredentials assumed = this.assumeRole();
+        this.fileCache.get().write(fileCacheKey, assumed);
+        return assumed;
+    }
+
+    @Override
+    void closeSource() {
+        this.sts.close();
+        if (this.previousHop.isPresent()) {
+            this.previousHop.get().close();
+        }
+    }
+
+    // The caller is the previous hop in a role chain, identified by its own key. Otherwise, it is identified by the access key
+    // ID of the default chain, which signs AssumeRole. The credentials of the default chain may change over time, so the key is
+    // built on every load.
+    private String fileCacheKey() {
+        final String caller;
+        if (this.previousHop.isPresent()) {
+            caller = this.previousHop.get().fileCacheKey();
+        } else {
+            caller = DefaultAWSCredentialsProviderChain.getInstance().getCredentials().getAWSAccessKeyId();
+        }
+        final SecurityTokenServiceClients.Settings stsSettings = this.sts.getSettings();
+        return FileCredentialsCache.key(this.roleArn, this.externalId.orElse(""), this.sessionName, caller,
+                                        stsSettings.getEndpoint().orElse(""), stsSettings.getRegion().orElse(""));
+    }
+
+    private ExpiringCredentials assumeRole() {
+        final AssumeRoleRequest request = new AssumeRoleRequest()
+                .withRoleArn(this.roleArn)
+                .withRoleSessionName(this.sessionName)
+                .withDurationSeconds(this.durationInSeconds);
+        if (this.externalId.isPresent()) {
+            request.setExternalId(this.externalId.get());
+        }
+        if (this.previousHop.isPresent()) {
+            request.setRequestCredentialsProvider(this.previousHop.get());
+        }
+        final Credentials credentials = this.sts.call(this.roleArn, () -> this.sts.get().assumeRole(request)).getCredentials();
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey(), credentials.getSessionToken()),
+                Optional.of(credentials.getExpiration().toInstant()));
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AssumeRoleCredentialsProvider.class);
+
+    private final SecurityTokenServiceClients.Lease sts;
+    private final String roleArn;
+    private final String sessionName;
+    private final Optional<String> externalId;
+    private final int durationInSeconds;
+    private final Optional<FileCredentialsCache> fileCache;
+    private final Duration fileCacheMinRemaining;
+
+    // The provider of the previous role in a role chain, whose credentials AssumeRole requests are signed with.
+    private final Optional<AssumeRoleCredentialsProvider> previousHop;
+}
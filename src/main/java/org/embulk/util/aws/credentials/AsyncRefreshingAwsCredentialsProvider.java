@@ -0,0 +1,35 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} which refreshes expiring credentials in background, for callers which
+ * should not wait for STS or else on requests, such as adapters to asynchronous clients of AWS SDK for Java 2.x.
+ *
+ * <p>It is created by {@link AwsCredentials#getAsyncRefreshingAWSCredentialsProvider(AwsCredentialsTaskWithPrefix)}, and must
+ * be closed when finished to stop its background refreshes.
+ *
+ * <p>{@link #getCredentials()} returns the latest credentials in memory once {@link #prefetch()} has loaded them. It still
+ * blocks in the following cases.
+ *
+ * <ul>
+ * <li>Until the first credentials are loaded, such as by the default chain or from STS. Requests during {@link #prefetch()}
+ * wait for it, and requests without it, or after it has failed, load the credentials by themselves.
+ * <li>When the credentials have expired because background refreshes have kept failing. Requests refresh them by themselves.
+ * <li>When the profile file of {@code "profile"}, or of the default chain, has been modified. Requests re-read it by themselves.
+ * </ul>
+ */
+public interface AsyncRefreshingAwsCredentialsProvider extends AWSCredentialsProvider, Closeable {
+    /**
+     * Starts loading the first credentials in background, of any {@code auth_method}, so that the first request does not wait
+     * for them, or waits only for the rest of the loading. Calls after the first one do nothing.
+     */
+    void prefetch();
+
+    /**
+     * Stops background refreshes, and releases resources to load credentials.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,24 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.Set;
+
+/**
+ * An authentication method chosen by {@code auth_method}, which creates {@link com.amazonaws.auth.AWSCredentialsProvider}.
+ *
+ * <p>Implementations are registered by their class names in {@link AuthMethods}, and class-loaded only when chosen. Then,
+ * their dependencies, such as the AWS STS SDK, are not loaded for other methods. They must have a constructor without
+ * arguments.
+ */
+interface AuthMethod {
+    /**
+     * Returns options which the method uses. {@link AuthMethods} rejects the other options in {@link AuthOption} if set.
+     */
+    Set<AuthOption> getAcceptedOptions();
+
+    /**
+     * Validates the task, and creates a provider which refreshes its credentials as {@code refreshSettings}. The accepted
+     * options are not validated yet.
+     */
+    AWSCredentialsProvider create(String prefix, AwsCredentialsConfig task, RefreshSettings refreshSettings);
+}
@@ -0,0 +1,175 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+
+/**
+ * A registry of {@link AuthMethod} by {@code auth_method}.
+ *
+ * <p>Methods are registered by their class names so that only the chosen methods are class-loaded. Methods which depend on an
+ * optional dependency, such as {@code "assume_role"} on {@code com.amazonaws:aws-java-sdk-sts}, are rejected with the name of
+ * the dependency if it is not in the class path.
+ */
+final class AuthMethods {
+    private AuthMethods() {
+        // No instantiation.
+    }
+
+    /**
+     * Creates a provider by the chosen method, after rejecting options which the method does not use.
+     */
+    static AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        return create(prefix, task, task.getAuthMethod(), Collections.emptySet(), refreshSettings);
+    }
+
+    /**
+     * Creates a provider by the method {@code name} with the options in the task, after rejecting options which the method
+     * does not use, except for {@code alsoAccepted}, such as options of {@code "agent"} for its source method.
+     */
+    static AWSCredentialsProvider create(
+            final String prefix,
+            final AwsCredentialsConfig task,
+            final String name,
+            final Set<AuthOption> alsoAccepted,
+            final RefreshSettings refreshSettings) {
+        final AuthMethod method = get(prefix, name);
+        for (final AuthOption option : AuthOption.values()) {
+            if (!method.getAcceptedOptions().contains(option) && !alsoAccepted.contains(option)) {
+                option.reject(prefix, task);
+            }
+        }
+        return method.create(prefix, task, refreshSettings);
+    }
+
+    /**
+     * Returns whether the method is registered, and its optional dependency is in the class path if any.
+     */
+    static boolean isAvailable(final String name) {
+        final Registration registration = REGISTRY.get(name);
+        return registration != null && registration.isDependencyPresent();
+    }
+
+    static List<String> names() {
+        return Collections.unmodifiableList(new ArrayList<>(REGISTRY.keySet()));
+    }
+
+    static <T> T require(final Optional<T> value, final String message) {
+        if (value.isPresent()) {
+            return value.get();
+        } else {
+            throw new ConfigException("Required option is not set: " + message);
+        }
+    }
+
+    static String requireEnvironmentVariable(final String name, final String message) {
+        final String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            throw new ConfigException("Required option is not set: " + message + " (or environment variable " + name + ")");
+        }
+        return value;
+    }
+
+    static String roleArn(final AwsCredentialsConfig task, final String accountId, final String roleName) {
+        return String.format(ARN_PATTERN, task.getArnPartition(), accountId, roleName);
+    }
+
+    static AuthMethod get(final String prefix, final String name) {
+        final Registration registration = REGISTRY.get(name);
+        if (registration == null) {
+            final List<String> names = names();
+            throw new ConfigException(String.format("Unknown auth_method '%s'. Supported methods are %s and %s.",
+                        name, String.join(", ", names.subList(0, names.size() - 1)), names.get(names.size() - 1)));
+        }
+        if (!registration.isDependencyPresent()) {
+            throw new ConfigException(String.format("'%sauth_method: %s' requires %s in the dependencies of the plugin.",
+                        prefix, name, registration.dependency.get()));
+        }
+        return registration.load();
+    }
+
+    private static final class Registration {
+        private Registration(final String className, final Optional<String> dependency, final Optional<String> dependencyClassName) {
+            this.className = className;
+            this.dependency = dependency;
+            this.dependencyClassName = dependencyClassName;
+            this.loaded = null;
+        }
+
+        private boolean isDependencyPresent() {
+            if (!this.dependencyClassName.isPresent()) {
+                return true;
+            }
+            try {
+                Class.forName(this.dependencyClassName.get(), false, AuthMethods.class.getClassLoader());
+                return true;
+            } catch (final ClassNotFoundException | LinkageError ex) {
+                return false;
+            }
+        }
+
+        private AuthMethod load() {
+            final AuthMethod loaded = this.loaded;
+            if (loaded != null) {
+                return loaded;
+            }
+            // Racing threads may load the method twice, which is harmless.
+            final AuthMethod newlyLoaded;
+            try {
+                newlyLoaded = (AuthMethod) Class.forName(this.className, true, AuthMethods.class.getClassLoader())
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (final ReflectiveOperationException ex) {
+                throw new IllegalStateException("Failed to load an AWS authentication method: " + this.className, ex);
+            }
+            this.loaded = newlyLoaded;
+            return newlyLoaded;
+        }
+
+        private final String className;
+        private final Optional<String> dependency;
+        private final Optional<String> dependencyClassName;
+
+        private volatile AuthMethod loaded;
+    }
+
+    private static void register(final String name, final String simpleClassName) {
+        REGISTRY.put(name, new Registration(PACKAGE + simpleClassName, Optional.empty(), Optional.empty()));
+    }
+
+    private static void registerWithSts(final String name, final String simpleClassName) {
+        REGISTRY.put(name, new Registration(PACKAGE + simpleClassName, Optional.of(STS_DEPENDENCY), Optional.of(STS_CLASS_NAME)));
+    }
+
+    private static final String ARN_PATTERN = "arn:%s:iam::%s:role/%s";
+
+    private static final String PACKAGE = "org.embulk.util.aws.credentials.";
+
+    private static final String STS_DEPENDENCY = "com.amazonaws:aws-java-sdk-sts";
+    private static final String STS_CLASS_NAME = "com.amazonaws.services.securitytoken.AWSSecurityTokenService";
+
+    // In the order of the list of supported methods in the error message.
+    private static final Map<String, Registration> REGISTRY = new LinkedHashMap<>();
+
+    static {
+        register("basic", "BasicAuthMethod");
+        register("env", "EnvAuthMethod");
+        register("instance", "InstanceAuthMethod");
+        register("container", "ContainerAuthMethod");
+        register("profile", "ProfileAuthMethod");
+        register("credential_process", "CredentialProcessAuthMethod");
+        register("properties", "PropertiesAuthMethod");
+        register("anonymous", "AnonymousAuthMethod");
+        register("session", "SessionAuthMethod");
+        registerWithSts("assume_role", "AssumeRoleAuthMethod");
+        registerWithSts("web_identity", "WebIdentityAuthMethod");
+        register("default", "DefaultAuthMethod");
+        register("agent", "AgentAuthMethod");
+    }
+}
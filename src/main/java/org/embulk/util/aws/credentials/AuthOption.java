@@ -0,0 +1,47 @@
+package org.embulk.util.aws.credentials;
+
+import java.util.function.Predicate;
+import org.embulk.config.ConfigException;
+
+/**
+ * Options without defaults which are valid only for some authentication methods. They are rejected if set for the others.
+ */
+enum AuthOption {
+    ACCESS_KEY_ID("access_key_id", task -> task.getAccessKeyId().isPresent()),
+    SECRET_ACCESS_KEY("secret_access_key", task -> task.getSecretAccessKey().isPresent()),
+    SESSION_TOKEN("session_token", task -> task.getSessionToken().isPresent()),
+    PROFILE_FILE("profile_file", task -> task.getProfileFile().isPresent()),
+    PROFILE_NAME("profile_name", task -> task.getProfileName().isPresent()),
+    ACCOUNT_ID("account_id", task -> task.getAccountId().isPresent()),
+    ROLE_NAME("role_name", task -> task.getRoleName().isPresent()),
+    EXTERNAL_ID("external_id", task -> task.getExternalId().isPresent()),
+    CREDENTIALS_CACHE_DIR("credentials_cache_dir", task -> task.getCredentialsCacheDir().isPresent()),
+    DEFAULT_CHAIN_HINT_FILE("default_chain_hint_file", task -> task.getDefaultChainHintFile().isPresent()),
+    WEB_IDENTITY_TOKEN_FILE("web_identity_token_file", task -> task.getWebIdentityTokenFile().isPresent()),
+    CREDENTIAL_PROCESS("credential_process", task -> task.getCredentialProcess().isPresent()),
+    ROLE_CHAIN("role_chain", task -> !task.getRoleChain().isEmpty()),
+    AGENT_SOURCE_AUTH_METHOD("agent_source_auth_method", task -> task.getAgentSourceAuthMethod().isPresent()),
+    AGENT_DIR("agent_dir", task -> task.getAgentDir().isPresent()),
+    STS_ENDPOINT("sts_endpoint", task -> task.getStsEndpoint().isPresent()),
+    STS_REGION("sts_region", task -> task.getStsRegion().isPresent()),
+    INSTANCE_METADATA_ENDPOINT("instance_metadata_endpoint", task -> task.getInstanceMetadataEndpoint().isPresent()),
+    ;
+
+    private AuthOption(final String name, final Predicate<AwsCredentialsConfig> isSet) {
+        this.name = name;
+        this.isSet = isSet;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    void reject(final String prefix, final AwsCredentialsConfig task) {
+        if (this.isSet.test(task)) {
+            throw new ConfigException("Invalid option is set: " + prefix + this.name);
+        }
+    }
+
+    private final String name;
+    private final Predicate<AwsCredentialsConfig> isSet;
+}
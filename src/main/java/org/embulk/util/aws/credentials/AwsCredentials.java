@@ -1,24 +1,17 @@
 package org.embulk.util.aws.credentials;
 
-import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSSessionCredentials;
-import com.amazonaws.auth.AWSSessionCredentialsProvider;
-import com.amazonaws.auth.AnonymousAWSCredentials;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.auth.BasicSessionCredentials;
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.auth.EnvironmentVariableCredentialsProvider;
-import com.amazonaws.auth.InstanceProfileCredentialsProvider;
-import com.amazonaws.auth.STSAssumeRoleSessionCredentialsProvider;
-import com.amazonaws.auth.SystemPropertiesCredentialsProvider;
-import com.amazonaws.auth.profile.ProfileCredentialsProvider;
-import com.amazonaws.auth.profile.ProfilesConfigFile;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-import org.embulk.config.ConfigException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +26,11 @@ public abstract class AwsCredentials {
     /**
      * Creates {@link com.amazonaws.auth.AWSCredentialsProvider} from entries prefixed with {@code "aws_"} in task definition.
      *
+     * <p>If the returned provider implements {@link java.io.Closeable}, it must be closed when finished. Providers of
+     * {@code "assume_role"} and {@code "web_identity"} hold a lease of an STS client shared in the process, which is released
+     * only by closing them. Providers in {@code refresh_mode: async} stop refreshing in background when closed, or when
+     * garbage-collected if not closed.
+     *
      * @param task  An entry in Embulk's task defining interface
      * @return {@link com.amazonaws.auth.AWSCredentialsProvider} created
      */
@@ -43,6 +41,11 @@ public abstract class AwsCredentials {
     /**
      * Creates {@link com.amazonaws.auth.AWSCredentialsProvider} from entries in task definition.
      *
+     * <p>If the returned provider implements {@link java.io.Closeable}, it must be closed when finished. Providers of
+     * {@code "assume_role"} and {@code "web_identity"} hold a lease of an STS client shared in the process, which is released
+     * only by closing them. Providers in {@code refresh_mode: async} stop refreshing in background when closed, or when
+     * garbage-collected if not closed.
+     *
      * @param task  An entry in Embulk's task defining interface
      * @return {@link com.amazonaws.auth.AWSCredentialsProvider} created
      */
@@ -50,232 +53,277 @@ public abstract class AwsCredentials {
         return getAWSCredentialsProvider("", task);
     }
 
-    private static AWSCredentialsProvider getAWSCredentialsProvider(String prefix, AwsCredentialsConfig task) {
-        String authMethodOption = prefix + "auth_method";
-        String sessionTokenOption = prefix + "session_token";
-        String profileFileOption = prefix + "profile_file";
-        String profileNameOption = prefix + "profile_name";
-        String accessKeyIdOption = prefix + "access_key_id";
-        String secretAccessKeyOption = prefix + "secret_access_key";
-        String accountIdOption = prefix + "account_id";
-        String roleNameOption = prefix + "role_name";
-        String externalIdOption = prefix + "external_id";
+    private static AWSCredentialsProvider getAWSCredentialsProvider(final String prefix, final AwsCredentialsConfig task) {
+        return getAWSCredentialsProvider(prefix, task, RefreshSettings.of(task, prefix));
+    }
 
-        switch (task.getAuthMethod()) {
-        case "basic":
-            // for backward compatibility
-            if (!task.getAccessKeyId().isPresent() && !task.getAccessKeyId().isPresent()) {
-                log.warn("Both '{}' and '{}' are not set. Assuming that '{}: anonymous' option is set.",
-                        accessKeyIdOption, secretAccessKeyOption, authMethodOption);
-                log.warn("If you intentionally use anonymous authentication, please set 'auth_method: anonymous' option.");
-                log.warn("This behavior will be removed in a future release.");
-                reject(task.getSessionToken(), sessionTokenOption);
-                reject(task.getProfileFile(), profileFileOption);
-                reject(task.getProfileName(), profileNameOption);
-                reject(task.getAccountId(), accountIdOption);
-                reject(task.getRoleName(), roleNameOption);
-                reject(task.getExternalId(), externalIdOption);
-                return new AWSCredentialsProvider() {
-                    public AWSCredentials getCredentials() {
-                        return new AnonymousAWSCredentials();
-                    }
+    private static AWSCredentialsProvider getAWSCredentialsProvider(
+            final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        if (task.getMetricsJmx()) {
+            CredentialsMetrics.enableJmx();
+        }
+        final Optional<AwsPropagatedCredentials> propagated = propagatedCredentialsOf(task);
+        if (propagated.isPresent()) {
+            return new PropagatedCredentialsProvider(
+                    propagated.get(),
+                    () -> AuthMethods.create(prefix, task, refreshSettings),
+                    refreshSettings);
+        }
+        return AuthMethods.create(prefix, task, refreshSettings);
+    }
 
-                    public void refresh() {
-                    }
-                };
-            } else {
-                reject(task.getSessionToken(), sessionTokenOption);
-                reject(task.getProfileFile(), profileFileOption);
-                reject(task.getProfileName(), profileNameOption);
-                reject(task.getExternalId(), externalIdOption);
-                reject(task.getAccountId(), accountIdOption);
-                reject(task.getRoleName(), roleNameOption);
-                final String accessKeyId = require(task.getAccessKeyId(), "'access_key_id', 'secret_access_key'");
-                final String secretAccessKey = require(task.getSecretAccessKey(), "'secret_access_key'");
-                final BasicAWSCredentials creds = new BasicAWSCredentials(accessKeyId, secretAccessKey);
-                return new AWSCredentialsProvider() {
-                    public AWSCredentials getCredentials() {
-                        return creds;
-                    }
+    /**
+     * Sets a sink to forward metrics of all credential providers in the process, such as to a metrics system.
+     *
+     * @param metrics  A sink of metrics, or {@code null} to forward nothing
+     */
+    public static void setMetrics(final AwsCredentialsMetrics metrics) {
+        CredentialsMetrics.setSink(Optional.ofNullable(metrics));
+    }
 
-                    public void refresh() {
-                    }
-                };
-            }
+    /**
+     * Logs a summary of metrics of credential providers used in the process, such as at the end of a task.
+     */
+    public static void logMetricsSummary() {
+        for (final CredentialsMetrics metrics : CredentialsMetrics.listUsed()) {
+            log.info("AWS credentials metrics: {}", metrics.summarize());
+        }
+    }
 
-        case "env":
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            return overwriteBasicCredentials(task, new EnvironmentVariableCredentialsProvider().getCredentials());
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} from entries prefixed with {@code "aws_"} in task definition.
+     *
+     * <p>Identical credential configurations share one provider, and one AssumeRole session, in the process. The returned
+     * handle must be closed when finished. The shared provider is released when its last handle is closed.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link SharedAwsCredentialsProvider} acquired
+     */
+    public static SharedAwsCredentialsProvider getSharedAWSCredentialsProvider(AwsCredentialsTaskWithPrefix task) {
+        return getSharedAWSCredentialsProvider("aws_", task);
+    }
 
-        case "instance":
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            return createInstanceProfileCredentialsProvider();
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} from entries in task definition.
+     *
+     * <p>Identical credential configurations share one provider, and one AssumeRole session, in the process. The returned
+     * handle must be closed when finished. The shared provider is released when its last handle is closed.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link SharedAwsCredentialsProvider} acquired
+     */
+    public static SharedAwsCredentialsProvider getSharedAWSCredentialsProvider(AwsCredentialsTask task) {
+        return getSharedAWSCredentialsProvider("", task);
+    }
 
-        case "profile":
-        {
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
+    private static SharedAwsCredentialsProvider getSharedAWSCredentialsProvider(final String prefix, final AwsCredentialsConfig task) {
+        final CredentialsConfigKey key = CredentialsConfigKey.of(task);
+        final AWSCredentialsProvider provider = SHARED_PROVIDERS.acquire(key, () -> getAWSCredentialsProvider(prefix, task));
+        return new SharedAwsCredentialsProvider(SHARED_PROVIDERS, key, provider);
+    }
 
-            String profileName = task.getProfileName().orElse("default");
-            ProfileCredentialsProvider provider;
-            if (task.getProfileFile().isPresent()) {
-                final Path profileFilePath = Paths.get(task.getProfileFile().get());
-                final ProfilesConfigFile file = new ProfilesConfigFile(profileFilePath.toFile());
-                provider = new ProfileCredentialsProvider(file, profileName);
-            } else {
-                provider = new ProfileCredentialsProvider(profileName);
-            }
+    /**
+     * Creates {@link AsyncRefreshingAwsCredentialsProvider} from entries prefixed with {@code "aws_"} in task definition.
+     *
+     * <p>Expiring credentials, such as of {@code "assume_role"} and {@code "instance"}, are refreshed in background as
+     * {@code refresh_mode: async} with {@code stale_while_revalidate: true}, regardless of the task definition. The task
+     * definition itself is not modified.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link AsyncRefreshingAwsCredentialsProvider} created
+     */
+    public static AsyncRefreshingAwsCredentialsProvider getAsyncRefreshingAWSCredentialsProvider(AwsCredentialsTaskWithPrefix task) {
+        return getAsyncRefreshingAWSCredentialsProvider("aws_", task);
+    }
 
-            return overwriteBasicCredentials(task, provider.getCredentials());
-        }
+    /**
+     * Creates {@link AsyncRefreshingAwsCredentialsProvider} from entries in task definition.
+     *
+     * <p>Expiring credentials, such as of {@code "assume_role"} and {@code "instance"}, are refreshed in background as
+     * {@code refresh_mode: async} with {@code stale_while_revalidate: true}, regardless of the task definition. The task
+     * definition itself is not modified.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link AsyncRefreshingAwsCredentialsProvider} created
+     */
+    public static AsyncRefreshingAwsCredentialsProvider getAsyncRefreshingAWSCredentialsProvider(AwsCredentialsTask task) {
+        return getAsyncRefreshingAWSCredentialsProvider("", task);
+    }
 
-        case "properties":
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            return overwriteBasicCredentials(task, new SystemPropertiesCredentialsProvider().getCredentials());
+    private static AsyncRefreshingAwsCredentialsProvider getAsyncRefreshingAWSCredentialsProvider(
+            final String prefix, final AwsCredentialsConfig task) {
+        final RefreshSettings refreshSettings = RefreshSettings.of(task, prefix).withAsync(true).withStaleWhileRevalidate(true);
+        return new PrefetchingCredentialsProvider(getAWSCredentialsProvider(prefix, task, refreshSettings));
+    }
 
-        case "anonymous":
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            return new AWSCredentialsProvider() {
-                public AWSCredentials getCredentials() {
-                    return new AnonymousAWSCredentials();
-                }
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} from entries prefixed with {@code "aws_"} in task definition, and resolves
+     * its first credentials in background.
+     *
+     * <p>The returned future completes when the first credentials are resolved, such as from STS or the EC2 instance metadata
+     * service, in a bounded pool of background threads. It completes exceptionally if the configuration is invalid, or the
+     * first credentials are not resolved. The handle must be closed when finished, as the one from
+     * {@link #getSharedAWSCredentialsProvider(AwsCredentialsTaskWithPrefix)}.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link java.util.concurrent.CompletableFuture} of {@link SharedAwsCredentialsProvider} acquired
+     */
+    public static CompletableFuture<SharedAwsCredentialsProvider> getSharedAWSCredentialsProviderAsync(AwsCredentialsTaskWithPrefix task) {
+        return getSharedAWSCredentialsProviderAsync("aws_", task);
+    }
 
-                public void refresh() {
-                }
-            };
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} from entries in task definition, and resolves its first credentials in
+     * background.
+     *
+     * <p>The returned future completes when the first credentials are resolved, such as from STS or the EC2 instance metadata
+     * service, in a bounded pool of background threads. It completes exceptionally if the configuration is invalid, or the
+     * first credentials are not resolved. The handle must be closed when finished, as the one from
+     * {@link #getSharedAWSCredentialsProvider(AwsCredentialsTask)}.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     * @return {@link java.util.concurrent.CompletableFuture} of {@link SharedAwsCredentialsProvider} acquired
+     */
+    public static CompletableFuture<SharedAwsCredentialsProvider> getSharedAWSCredentialsProviderAsync(AwsCredentialsTask task) {
+        return getSharedAWSCredentialsProviderAsync("", task);
+    }
 
-        case "session":
-        {
-            final String accessKeyId = require(task.getAccessKeyId(),
-                    "'" + accessKeyIdOption + "', '" + secretAccessKeyOption + "', '" + sessionTokenOption + "'");
-            final String secretAccessKey = require(task.getSecretAccessKey(),
-                    "'" + secretAccessKeyOption + "', '" + sessionTokenOption + "'");
-            final String sessionToken = require(task.getSessionToken(),
-                    "'" + sessionTokenOption + "'");
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            final AWSSessionCredentials creds = new BasicSessionCredentials(accessKeyId, secretAccessKey, sessionToken);
-            return new AWSSessionCredentialsProvider() {
-                public AWSSessionCredentials getCredentials() {
-                    return creds;
-                }
+    private static CompletableFuture<SharedAwsCredentialsProvider> getSharedAWSCredentialsProviderAsync(
+            final String prefix, final AwsCredentialsConfig task) {
+        return CredentialsResolver.shared().supply(() -> {
+            final SharedAwsCredentialsProvider provider = getSharedAWSCredentialsProvider(prefix, task);
+            try {
+                provider.getCredentials();
+            } catch (final RuntimeException ex) {
+                provider.close();
+                throw ex;
+            }
+            return provider;
+        });
+    }
 
-                public void refresh() {
-                }
-            };
-        }
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} for each of entries prefixed with {@code "aws_"} in task definitions, and
+     * resolves their first credentials concurrently in background.
+     *
+     * <p>It works as {@link #getSharedAWSCredentialsProviderAsync(AwsCredentialsTaskWithPrefix)} for each task. Tasks of an
+     * identical configuration are resolved only once, and share one provider. Waiting for all the returned futures takes about
+     * as long as the slowest source, rather than the sum of all of them.
+     *
+     * @param tasks  Entries in Embulk's task defining interface
+     * @return {@link java.util.concurrent.CompletableFuture}s of {@link SharedAwsCredentialsProvider} in the order of the tasks
+     */
+    public static List<CompletableFuture<SharedAwsCredentialsProvider>> getSharedAWSCredentialsProvidersWithPrefixAsync(
+            Collection<? extends AwsCredentialsTaskWithPrefix> tasks) {
+        return getSharedAWSCredentialsProvidersAsync("aws_", tasks);
+    }
 
-        case "assume_role":
-        {
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            final String accountId = require(task.getAccountId(),
-                    "'" + accountIdOption + "'");
-            final String roleName = require(task.getRoleName(),
-                    "'" + roleNameOption + "'");
-            final String arn = String.format(ARN_PATTERN, task.getArnPartition(), accountId, roleName);
+    /**
+     * Acquires {@link SharedAwsCredentialsProvider} for each of entries in task definitions, and resolves their first
+     * credentials concurrently in background.
+     *
+     * <p>It works as {@link #getSharedAWSCredentialsProviderAsync(AwsCredentialsTask)} for each task. Tasks of an identical
+     * configuration are resolved only once, and share one provider. Waiting for all the returned futures takes about as long
+     * as the slowest source, rather than the sum of all of them.
+     *
+     * @param tasks  Entries in Embulk's task defining interface
+     * @return {@link java.util.concurrent.CompletableFuture}s of {@link SharedAwsCredentialsProvider} in the order of the tasks
+     */
+    public static List<CompletableFuture<SharedAwsCredentialsProvider>> getSharedAWSCredentialsProvidersAsync(
+            Collection<? extends AwsCredentialsTask> tasks) {
+        return getSharedAWSCredentialsProvidersAsync("", tasks);
+    }
 
-            // use AWSSecurityTokenServiceClient with DefaultAWSCredentialsProviderChain
-            // https://javadoc.io/doc/com.amazonaws/aws-java-sdk-sts/1.11.0/com/amazonaws/services/securitytoken/AWSSecurityTokenServiceClient.html#AWSSecurityTokenServiceClient()
-            STSAssumeRoleSessionCredentialsProvider.Builder builder
-                    = new STSAssumeRoleSessionCredentialsProvider.Builder(arn, task.getSessionName());
-            if (task.getExternalId().isPresent()) {
-                log.info("ExternalId is specified with AssumeRole.");
-                builder.withExternalId(task.getExternalId().get());
+    private static List<CompletableFuture<SharedAwsCredentialsProvider>> getSharedAWSCredentialsProvidersAsync(
+            final String prefix, final Collection<? extends AwsCredentialsConfig> tasks) {
+        final Map<CredentialsConfigKey, CompletableFuture<SharedAwsCredentialsProvider>> resolving = new HashMap<>();
+        final List<CompletableFuture<SharedAwsCredentialsProvider>> futures = new ArrayList<>();
+        for (final AwsCredentialsConfig task : tasks) {
+            final CredentialsConfigKey key = CredentialsConfigKey.of(task);
+            final CompletableFuture<SharedAwsCredentialsProvider> first = resolving.get(key);
+            if (first == null) {
+                final CompletableFuture<SharedAwsCredentialsProvider> future = getSharedAWSCredentialsProviderAsync(prefix, task);
+                resolving.put(key, future);
+                futures.add(future);
             } else {
-                log.info("ExternalId is not specified for AssumeRole.");
+                // Identical configurations wait for the first one, and then acquire the provider it has already resolved.
+                futures.add(first.thenApply(resolved -> getSharedAWSCredentialsProvider(prefix, task)));
             }
-            return builder.withRoleSessionDurationSeconds(task.getDurationInSeconds())
-                    .build();
         }
+        return futures;
+    }
 
-        case "default":
-        {
-            reject(task.getAccessKeyId(), accessKeyIdOption);
-            reject(task.getSecretAccessKey(), secretAccessKeyOption);
-            reject(task.getSessionToken(), sessionTokenOption);
-            reject(task.getProfileFile(), profileFileOption);
-            reject(task.getProfileName(), profileNameOption);
-            reject(task.getAccountId(), accountIdOption);
-            reject(task.getRoleName(), roleNameOption);
-            reject(task.getExternalId(), externalIdOption);
-            return new DefaultAWSCredentialsProviderChain();
-        }
+    /**
+     * Resolves short-lived session credentials from entries prefixed with {@code "aws_"} in task definition, and embeds them
+     * into the task definition to ship to workers.
+     *
+     * <p>It is expected to be called in the coordinator while setting up a transaction. Workers which receive the task
+     * definition get {@link com.amazonaws.auth.AWSCredentialsProvider} from
+     * {@link #getAWSCredentialsProvider(AwsCredentialsTaskWithPrefix)} without any network call to STS, the EC2 instance metadata
+     * service, or else. When the propagated credentials expire, workers resolve credentials by themselves. Nothing is embedded
+     * for authentication methods without expiring credentials, such as {@code "basic"}.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     */
+    public static void propagateCredentials(AwsCredentialsTaskWithPrefix task) {
+        propagateCredentials("aws_", task);
+    }
 
-        default:
-            throw new ConfigException(String.format("Unknown auth_method '%s'. Supported methods are basic, instance, profile, properties, anonymous, session and default.",
-                        task.getAuthMethod()));
-        }
+    /**
+     * Resolves short-lived session credentials from entries in task definition, and embeds them into the task definition to
+     * ship to workers.
+     *
+     * <p>It is expected to be called in the coordinator while setting up a transaction. Workers which receive the task
+     * definition get {@link com.amazonaws.auth.AWSCredentialsProvider} from {@link #getAWSCredentialsProvider(AwsCredentialsTask)}
+     * without any network call to STS, the EC2 instance metadata service, or else. When the propagated credentials expire,
+     * workers resolve credentials by themselves. Nothing is embedded for authentication methods without expiring credentials,
+     * such as {@code "basic"}.
+     *
+     * @param task  An entry in Embulk's task defining interface
+     */
+    public static void propagateCredentials(AwsCredentialsTask task) {
+        propagateCredentials("", task);
     }
 
-    private static AWSCredentialsProvider overwriteBasicCredentials(AwsCredentialsConfig task, final AWSCredentials creds) {
-        return new AWSCredentialsProvider() {
-            public AWSCredentials getCredentials() {
-                return creds;
+    private static void propagateCredentials(final String prefix, final AwsCredentialsConfig task) {
+        task.setPropagatedCredentials(Optional.empty());
+        final AWSCredentialsProvider provider = AuthMethods.create(prefix, task, RefreshSettings.of(task, prefix));
+        try {
+            if (!(provider instanceof RefreshableCredentialsProvider)) {
+                log.debug("AWS credentials are not propagated to workers for '{}auth_method: {}'.", prefix, task.getAuthMethod());
+                return;
             }
-
-            public void refresh() {
+            final ExpiringCredentials credentials = ((RefreshableCredentialsProvider) provider).getExpiringCredentials();
+            if (!(credentials.getCredentials() instanceof AWSSessionCredentials)) {
+                return;
             }
-        };
-    }
-
-    private static <T> T require(Optional<T> value, String message) {
-        if (value.isPresent()) {
-            return value.get();
-        } else {
-            throw new ConfigException("Required option is not set: " + message);
+            task.setPropagatedCredentials(Optional.of(AwsPropagatedCredentials.of(
+                    (AWSSessionCredentials) credentials.getCredentials(), credentials.getExpiration())));
+            log.info("Propagating AWS session credentials to workers, which expire at {}.",
+                     credentials.getExpiration().map(Object::toString).orElse("(never)"));
+        } finally {
+            closeProvider(provider);
         }
     }
 
-    private static <T> void reject(Optional<T> value, String message) {
-        if (value.isPresent()) {
-            throw new ConfigException("Invalid option is set: " + message);
-        }
+    // It is not mapped from ConfigSource, but only from TaskSource. It is null in a task mapped from ConfigSource.
+    private static Optional<AwsPropagatedCredentials> propagatedCredentialsOf(final AwsCredentialsConfig task) {
+        final Optional<AwsPropagatedCredentials> propagated = task.getPropagatedCredentials();
+        return propagated == null ? Optional.empty() : propagated;
     }
 
-    @SuppressWarnings("deprecation")
-    private static InstanceProfileCredentialsProvider createInstanceProfileCredentialsProvider() {
-        return new InstanceProfileCredentialsProvider();
+    private static void closeProvider(final AWSCredentialsProvider provider) {
+        if (provider instanceof Closeable) {
+            try {
+                ((Closeable) provider).close();
+            } catch (final IOException ex) {
+                log.warn("Failed to close an AWS credentials provider.", ex);
+            }
+        }
     }
 
     private static final Logger log = LoggerFactory.getLogger(AwsCredentials.class);
-    private static final String ARN_PATTERN = "arn:%s:iam::%s:role/%s";
+
+    private static final ReferenceCountedCache<CredentialsConfigKey, AWSCredentialsProvider> SHARED_PROVIDERS =
+            new ReferenceCountedCache<>(AwsCredentials::closeProvider);
 }
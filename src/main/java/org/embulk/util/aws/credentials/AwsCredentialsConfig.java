@@ -1,5 +1,6 @@
 package org.embulk.util.aws.credentials;
 
+import java.util.List;
 import java.util.Optional;
 
 interface AwsCredentialsConfig {
@@ -14,8 +15,8 @@ interface AwsCredentialsConfig {
      * Sets an authentication method to configure.
      *
      * @param method  One of authentication methods from {@code "basic"}, {@code "env"}, {@code "instance"},
-     *     {@code "profile"}, {@code "properties"}, {@code "anonymous"}, {@code "session"},
-     *     {@code "assume_role"}, and {@code "default"}.
+     *     {@code "container"}, {@code "profile"}, {@code "credential_process"}, {@code "properties"}, {@code "anonymous"},
+     *     {@code "session"}, {@code "assume_role"}, {@code "web_identity"}, and {@code "default"}.
      */
     void setAuthMethod(String method);
 
@@ -82,7 +83,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the path to an AWS IAM profile file configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "profile"}.
+     * <p>It is available only when the authentication method is set to: {@code "profile"} or {@code "credential_process"}.
      *
      * @return The path to an AWS IAM profile file configured
      * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-profiles.html">Named profiles</a>
@@ -92,7 +93,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets a path to an AWS IAM profile file to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "profile"}.
+     * <p>It is available only when the authentication method is set to: {@code "profile"} or {@code "credential_process"}.
      *
      * @param value  The path to an AWS IAM profile file to configure
      * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-profiles.html">Named profiles</a>
@@ -102,7 +103,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the name in an AWS IAM profile file configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "profile"}.
+     * <p>It is available only when the authentication method is set to: {@code "profile"} or {@code "credential_process"}.
      *
      * @return The name in an AWS IAM profile file configured
      * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-profiles.html">Named profiles</a>
@@ -112,7 +113,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets a name in an AWS IAM profile file to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "profile"}.
+     * <p>It is available only when the authentication method is set to: {@code "profile"} or {@code "credential_process"}.
      *
      * @param value  The name in an AWS IAM profile file to configure
      * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-profiles.html">Named profiles</a>
@@ -122,7 +123,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the AWS Account ID configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @return The AWS Account ID configured
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/console_account-alias.html">Account ID</a>
@@ -132,7 +133,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets an AWS Account ID to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @param value  An AWS Account ID to configure. (For example, {@code 0123456789})
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/console_account-alias.html">Account ID</a>
@@ -142,7 +143,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the AWS Role Name configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @return The AWS Role Name configured
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_terms-and-concepts.html">Role</a>
@@ -152,7 +153,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets an AWS Role Name to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @param value  An AWS Role Name to configure. (For example, {@code exampleRole})
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_terms-and-concepts.html">Role</a>
@@ -182,7 +183,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the Duration in seconds configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @return The Duration in seconds configured
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_use.html#id_roles_use_view-role-max-session">Duration</a>
@@ -192,7 +193,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets a Duration in seconds to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @param value  A Duration in seconds to configure. (For example, {@code 900})
      * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_use.html#id_roles_use_view-role-max-session">Duration</a>
@@ -202,7 +203,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the ARN Partition configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @return The ARN Partition configured
      * @see <a href="https://docs.aws.amazon.com/general/latest/gr/aws-arns-and-namespaces.html">Partition</a>
@@ -212,7 +213,7 @@ interface AwsCredentialsConfig {
     /**
      * Sets an ARN Partition to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @param value  An ARN Partition to configure. (For example, {@code aws})
      * @see <a href="https://docs.aws.amazon.com/general/latest/gr/aws-arns-and-namespaces.html">Partition</a>
@@ -222,7 +223,7 @@ interface AwsCredentialsConfig {
     /**
      * Gets the Role session name configured.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @return The Roel session name configured
      * @see <a href="https://docs.aws.amazon.com/STS/latest/APIReference/API_AssumeRole.html">RoleSessionName</a>
@@ -232,10 +233,576 @@ interface AwsCredentialsConfig {
     /**
      * Sets a Role session name to configure.
      *
-     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"} or {@code "web_identity"}.
      *
      * @param value  A Role session name to configure. (For example, {@code treasure-data})
      * @see <a href="https://docs.aws.amazon.com/STS/latest/APIReference/API_AssumeRole.html">RoleSessionName</a>
      */
     void setSessionName(String value);
+
+    /**
+     * Gets the refresh mode of expiring credentials configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * @return The refresh mode configured, {@code "sync"} or {@code "async"}
+     */
+    String getRefreshMode();
+
+    /**
+     * Sets a refresh mode of expiring credentials to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * <p>In {@code "sync"}, credentials are refreshed in the first thread which requests credentials close to expiring while
+     * the other threads keep using the current credentials.
+     * In {@code "async"}, credentials are refreshed in background before they expire so that request threads never block on
+     * refreshing. Background refreshes of all providers in the process share a few daemon threads. A provider stops
+     * refreshing in background when it is closed, or garbage-collected if it is not closed.
+     *
+     * @param value  A refresh mode to configure, {@code "sync"} or {@code "async"}
+     */
+    void setRefreshMode(String value);
+
+    /**
+     * Gets the seconds to refresh expiring credentials ahead of their expiration configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * @return The seconds to refresh expiring credentials ahead of their expiration configured
+     */
+    int getRefreshAheadSeconds();
+
+    /**
+     * Sets seconds to refresh expiring credentials ahead of their expiration to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * @param value  Seconds to refresh expiring credentials ahead of their expiration to configure. (For example, {@code 300})
+     */
+    void setRefreshAheadSeconds(int value);
+
+    /**
+     * Gets the maximum random jitter in seconds added to refresh ahead configured.
+     *
+     * <p>It is available only when the refresh mode is set to: {@code "async"}.
+     *
+     * @return The maximum random jitter in seconds configured
+     */
+    int getRefreshJitterSeconds();
+
+    /**
+     * Sets a maximum random jitter in seconds added to refresh ahead to configure.
+     *
+     * <p>It is available only when the refresh mode is set to: {@code "async"}.
+     *
+     * @param value  A maximum random jitter in seconds to configure. (For example, {@code 60})
+     */
+    void setRefreshJitterSeconds(int value);
+
+    /**
+     * Gets whether still-valid credentials are served when refreshing them fails configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * @return {@code true} if still-valid credentials are served when refreshing them fails configured
+     */
+    boolean getStaleWhileRevalidate();
+
+    /**
+     * Sets whether still-valid credentials are served when refreshing them fails to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "instance"}, {@code "container"},
+     * or {@code "web_identity"}.
+     *
+     * <p>If {@code true}, a failure to refresh credentials close to expiring, such as a transient error of STS or the EC2
+     * instance metadata service, does not fail requests while the current credentials are still valid. The refresh is retried,
+     * and requests fail only when the credentials have expired. If {@code false}, requests fail when refreshing credentials
+     * within a minute before expiring fails.
+     *
+     * @param value  {@code true} to serve still-valid credentials when refreshing them fails
+     */
+    void setStaleWhileRevalidate(boolean value);
+
+    /**
+     * Gets the path to a directory to cache AssumeRole credentials across Embulk runs configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     *
+     * @return The path to a directory to cache AssumeRole credentials configured
+     */
+    Optional<String> getCredentialsCacheDir();
+
+    /**
+     * Sets a path to a directory to cache AssumeRole credentials across Embulk runs to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     *
+     * <p>Credentials are cached in files only readable and writable by the owner, keyed by the role ARN, the External ID,
+     * the Role session name, the caller, and the STS endpoint and region. The caller is the previous role in {@code role_chain}, or the
+     * access key ID of the default chain. They are reused while they still have enough remaining lifetime.
+     *
+     * @param value  A path to a directory to cache AssumeRole credentials to configure. (For example, {@code /home/embulk/.embulk/aws/cache})
+     */
+    void setCredentialsCacheDir(Optional<String> value);
+
+    /**
+     * Gets the minimum remaining lifetime in seconds of cached credentials to reuse configured.
+     *
+     * <p>It is available only when the credentials cache directory is set.
+     *
+     * @return The minimum remaining lifetime in seconds of cached credentials to reuse configured
+     */
+    int getCredentialsCacheMinRemainingSeconds();
+
+    /**
+     * Sets a minimum remaining lifetime in seconds of cached credentials to reuse to configure.
+     *
+     * <p>It is available only when the credentials cache directory is set.
+     *
+     * @param value  A minimum remaining lifetime in seconds of cached credentials to reuse to configure. (For example, {@code 900})
+     */
+    void setCredentialsCacheMinRemainingSeconds(int value);
+
+    /**
+     * Gets the session credentials propagated from the coordinator.
+     *
+     * <p>It is set by {@link AwsCredentials#propagateCredentials(AwsCredentialsTask)} or
+     * {@link AwsCredentials#propagateCredentials(AwsCredentialsTaskWithPrefix)}, not by users. It is not a configuration
+     * option, but only shipped in the task definition. It is {@code null} in a task mapped from a configuration.
+     *
+     * @return The session credentials propagated from the coordinator
+     */
+    Optional<AwsPropagatedCredentials> getPropagatedCredentials();
+
+    /**
+     * Sets session credentials propagated from the coordinator.
+     *
+     * <p>It is set by {@link AwsCredentials#propagateCredentials(AwsCredentialsTask)} or
+     * {@link AwsCredentials#propagateCredentials(AwsCredentialsTaskWithPrefix)}, not by users.
+     *
+     * @param value  Session credentials propagated from the coordinator
+     */
+    void setPropagatedCredentials(Optional<AwsPropagatedCredentials> value);
+
+    /**
+     * Gets the endpoint of the EC2 instance metadata service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"} or {@code "default"}.
+     *
+     * @return The endpoint of the EC2 instance metadata service configured
+     * @see <a href="https://docs.aws.amazon.com/AWSEC2/latest/UserGuide/configuring-instance-metadata-service.html">Use IMDSv2</a>
+     */
+    Optional<String> getInstanceMetadataEndpoint();
+
+    /**
+     * Sets an endpoint of the EC2 instance metadata service to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"} or {@code "default"}.
+     *
+     * <p>If it is not set, the environment variable {@code AWS_EC2_METADATA_SERVICE_ENDPOINT}, or
+     * {@code http://169.254.169.254} is used.
+     *
+     * @param value  An endpoint of the EC2 instance metadata service to configure. (For example, {@code http://127.0.0.1:8080})
+     * @see <a href="https://docs.aws.amazon.com/AWSEC2/latest/UserGuide/configuring-instance-metadata-service.html">Use IMDSv2</a>
+     */
+    void setInstanceMetadataEndpoint(Optional<String> value);
+
+    /**
+     * Gets the connect timeout in milliseconds to credential metadata endpoints configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @return The connect timeout in milliseconds to credential metadata endpoints configured
+     */
+    int getMetadataConnectTimeoutMillis();
+
+    /**
+     * Sets a connect timeout in milliseconds to credential metadata endpoints to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @param value  A connect timeout in milliseconds to credential metadata endpoints to configure. (For example, {@code 1000})
+     */
+    void setMetadataConnectTimeoutMillis(int value);
+
+    /**
+     * Gets the read timeout in milliseconds from credential metadata endpoints configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @return The read timeout in milliseconds from credential metadata endpoints configured
+     */
+    int getMetadataReadTimeoutMillis();
+
+    /**
+     * Sets a read timeout in milliseconds from credential metadata endpoints to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @param value  A read timeout in milliseconds from credential metadata endpoints to configure. (For example, {@code 1000})
+     */
+    void setMetadataReadTimeoutMillis(int value);
+
+    /**
+     * Gets the maximum number of retries for credential metadata endpoints configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @return The maximum number of retries for credential metadata endpoints configured
+     */
+    int getMetadataMaxRetries();
+
+    /**
+     * Sets a maximum number of retries for credential metadata endpoints to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "instance"}, {@code "container"}, or {@code "default"}.
+     *
+     * @param value  A maximum number of retries for credential metadata endpoints to configure. (For example, {@code 1})
+     */
+    void setMetadataMaxRetries(int value);
+
+    /**
+     * Gets the timeout in milliseconds to probe network-backed sources in the default chain configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "default"}.
+     *
+     * @return The timeout in milliseconds to probe network-backed sources in the default chain configured
+     */
+    int getDefaultChainTimeoutMillis();
+
+    /**
+     * Sets a timeout in milliseconds to probe network-backed sources in the default chain to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "default"}.
+     *
+     * <p>Web identity, the container credentials endpoint, and the EC2 instance metadata service are probed concurrently
+     * within the timeout after the local sources, such as environment variables, have no credentials.
+     *
+     * @param value  A timeout in milliseconds to probe network-backed sources in the default chain to configure. (For example, {@code 5000})
+     */
+    void setDefaultChainTimeoutMillis(int value);
+
+    /**
+     * Gets the path to a hint file to remember the source resolved in the default chain across Embulk runs configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "default"}.
+     *
+     * @return The path to a hint file of the default chain configured
+     */
+    Optional<String> getDefaultChainHintFile();
+
+    /**
+     * Sets a path to a hint file to remember the source resolved in the default chain across Embulk runs to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "default"}.
+     *
+     * <p>The next Embulk run starts probing the source in the hint file early if it is network-backed, such as the EC2 instance
+     * metadata service. The order of the chain is kept. The source is used only if no source prior to it has credentials.
+     *
+     * @param value  A path to a hint file of the default chain to configure. (For example, {@code /home/embulk/.embulk/aws/default_chain})
+     */
+    void setDefaultChainHintFile(Optional<String> value);
+
+    /**
+     * Gets the path to a web identity token file configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "web_identity"}.
+     *
+     * @return The path to a web identity token file configured
+     */
+    Optional<String> getWebIdentityTokenFile();
+
+    /**
+     * Sets a path to a web identity token file to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "web_identity"}.
+     *
+     * <p>If it is not set, the environment variable {@code AWS_WEB_IDENTITY_TOKEN_FILE} is used, as set for IAM roles for
+     * service accounts in Amazon EKS. The file is read again only when it is modified.
+     *
+     * @param value  A path to a web identity token file to configure. (For example, {@code /var/run/secrets/eks.amazonaws.com/serviceaccount/token})
+     * @see <a href="https://docs.aws.amazon.com/STS/latest/APIReference/API_AssumeRoleWithWebIdentity.html">AssumeRoleWithWebIdentity</a>
+     */
+    void setWebIdentityTokenFile(Optional<String> value);
+
+    /**
+     * Gets the endpoint of AWS Security Token Service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The endpoint of AWS Security Token Service configured
+     */
+    Optional<String> getStsEndpoint();
+
+    /**
+     * Sets an endpoint of AWS Security Token Service to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * <p>If it is not set, the regional endpoint of the AWS Region of AWS Security Token Service is used, or the global
+     * endpoint {@code https://sts.amazonaws.com} if the region is not set either. Set it for VPC endpoints, for example.
+     *
+     * @param value  An endpoint of AWS Security Token Service to configure. (For example, {@code https://vpce-0123456789abcdef0-abcdefgh.sts.ap-northeast-1.vpce.amazonaws.com})
+     */
+    void setStsEndpoint(Optional<String> value);
+
+    /**
+     * Gets the command to source credentials from configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "credential_process"}.
+     *
+     * @return The command to source credentials from configured
+     * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-sourcing-external.html">Sourcing credentials with an external process</a>
+     */
+    Optional<String> getCredentialProcess();
+
+    /**
+     * Sets a command to source credentials from to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "credential_process"}.
+     *
+     * <p>If it is not set, {@code credential_process} of the profile is used, which is looked up in the profile file, or in
+     * the AWS config file and the AWS credentials file. The command must print credentials in JSON of {@code "Version": 1}.
+     *
+     * @param value  A command to source credentials from to configure. (For example, {@code /opt/bin/vault-aws-helper --role embulk})
+     * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-sourcing-external.html">Sourcing credentials with an external process</a>
+     */
+    void setCredentialProcess(Optional<String> value);
+
+    /**
+     * Gets the timeout in milliseconds of the command to source credentials from configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "credential_process"}.
+     *
+     * @return The timeout in milliseconds of the command configured
+     */
+    int getCredentialProcessTimeoutMillis();
+
+    /**
+     * Sets a timeout in milliseconds of the command to source credentials from to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "credential_process"}.
+     *
+     * <p>The command is killed if it does not finish within the timeout.
+     *
+     * @param value  A timeout in milliseconds of the command to configure. (For example, {@code 30000})
+     */
+    void setCredentialProcessTimeoutMillis(int value);
+
+    /**
+     * Gets the intermediate roles to assume before the role of the AWS Account ID and the AWS Role Name configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     *
+     * @return The intermediate roles configured, in the order to assume
+     * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_terms-and-concepts.html#iam-term-role-chaining">Role chaining</a>
+     */
+    List<AwsRoleHop> getRoleChain();
+
+    /**
+     * Sets intermediate roles to assume before the role of the AWS Account ID and the AWS Role Name to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}.
+     *
+     * <p>The first role is assumed with credentials from {@link com.amazonaws.auth.DefaultAWSCredentialsProviderChain}, and
+     * each next role is assumed with credentials of the previous role. Credentials of each role are cached and refreshed
+     * independently. Note that AWS limits a role session assumed in a role chain to one hour at most.
+     *
+     * @param value  Intermediate roles to configure, in the order to assume
+     * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_terms-and-concepts.html#iam-term-role-chaining">Role chaining</a>
+     */
+    void setRoleChain(List<AwsRoleHop> value);
+
+    /**
+     * Gets the AWS Region of AWS Security Token Service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The AWS Region of AWS Security Token Service configured
+     */
+    Optional<String> getStsRegion();
+
+    /**
+     * Sets an AWS Region of AWS Security Token Service to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * <p>Requests are sent to the regional endpoint of the region, unless the endpoint is set, and signed for the region.
+     *
+     * @param value  An AWS Region of AWS Security Token Service to configure. (For example, {@code ap-northeast-1})
+     * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_credentials_temp_enable-regions.html">Managing AWS STS in an AWS Region</a>
+     */
+    void setStsRegion(Optional<String> value);
+
+    /**
+     * Gets the connect timeout in milliseconds to AWS Security Token Service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The connect timeout in milliseconds to AWS Security Token Service configured
+     */
+    int getStsConnectTimeoutMillis();
+
+    /**
+     * Sets a connect timeout in milliseconds to AWS Security Token Service to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @param value  A connect timeout in milliseconds to AWS Security Token Service to configure. (For example, {@code 10000})
+     */
+    void setStsConnectTimeoutMillis(int value);
+
+    /**
+     * Gets the socket timeout in milliseconds from AWS Security Token Service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The socket timeout in milliseconds from AWS Security Token Service configured
+     */
+    int getStsSocketTimeoutMillis();
+
+    /**
+     * Sets a socket timeout in milliseconds from AWS Security Token Service to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @param value  A socket timeout in milliseconds from AWS Security Token Service to configure. (For example, {@code 50000})
+     */
+    void setStsSocketTimeoutMillis(int value);
+
+    /**
+     * Gets the rate limit of calls to AWS Security Token Service per role ARN, in calls per second, configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The rate limit of calls to AWS Security Token Service per role ARN configured
+     */
+    double getStsRateLimit();
+
+    /**
+     * Sets a rate limit of calls to AWS Security Token Service per role ARN, in calls per second, to configure.
+     *
+     * <p>Calls for the same role share the rate limit in the process, even from different tasks.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @param value  A rate limit of calls to AWS Security Token Service per role ARN to configure. (For example, {@code 10.0})
+     */
+    void setStsRateLimit(double value);
+
+    /**
+     * Gets the number of calls to AWS Security Token Service per role ARN permitted in a burst configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The number of calls to AWS Security Token Service per role ARN permitted in a burst configured
+     */
+    int getStsRateLimitBurst();
+
+    /**
+     * Sets the number of calls to AWS Security Token Service per role ARN permitted in a burst to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @param value  The number of calls to AWS Security Token Service per role ARN permitted in a burst to configure. (For example, {@code 20})
+     */
+    void setStsRateLimitBurst(int value);
+
+    /**
+     * Gets the maximum number of retries of a throttled or failed call to AWS Security Token Service configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @return The maximum number of retries of a call to AWS Security Token Service configured
+     */
+    int getStsMaxRetries();
+
+    /**
+     * Sets the maximum number of retries of a throttled or failed call to AWS Security Token Service to configure.
+     *
+     * <p>Retries wait with exponential backoff and random jitter.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "assume_role"}, {@code "web_identity"}, or
+     * {@code "default"}.
+     *
+     * @param value  The maximum number of retries of a call to AWS Security Token Service to configure. (For example, {@code 5})
+     */
+    void setStsMaxRetries(int value);
+
+    /**
+     * Gets whether metrics of the credential provider are exposed through JMX configured.
+     *
+     * @return {@code true} if metrics of the credential provider are exposed through JMX configured
+     */
+    boolean getMetricsJmx();
+
+    /**
+     * Sets whether metrics of the credential provider are exposed through JMX to configure.
+     *
+     * @param value  {@code true} to expose metrics of the credential provider through the platform MBean server
+     */
+    void setMetricsJmx(boolean value);
+
+    /**
+     * Gets the authentication method with which the credential agent resolves credentials configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "agent"}.
+     *
+     * @return The authentication method with which the credential agent resolves credentials configured
+     */
+    Optional<String> getAgentSourceAuthMethod();
+
+    /**
+     * Sets an authentication method with which the credential agent resolves credentials to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "agent"}.
+     *
+     * <p>With {@code "agent"}, Embulk processes on the same host share credentials resolved by this authentication method
+     * through files in {@code agent_dir}. One of the processes resolves and refreshes the credentials at a time while the
+     * others read them. The other options, such as {@code role_name}, are for this authentication method.
+     *
+     * @param value  An authentication method, {@code "assume_role"}, {@code "web_identity"}, {@code "instance"},
+     *     {@code "container"}, or {@code "credential_process"}
+     */
+    void setAgentSourceAuthMethod(Optional<String> value);
+
+    /**
+     * Gets the directory where the credential agent shares credentials configured.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "agent"}.
+     *
+     * @return The directory where the credential agent shares credentials configured
+     */
+    Optional<String> getAgentDir();
+
+    /**
+     * Sets a directory where the credential agent shares credentials to configure.
+     *
+     * <p>It is available only when the authentication method is set to: {@code "agent"}.
+     *
+     * <p>It defaults to {@code ~/.embulk/aws-credentials-agent}. Processes which share credentials must be run by the same
+     * user, as the files are readable only by their owner.
+     *
+     * @param value  A directory where the credential agent shares credentials to configure. (For example, {@code /var/lib/embulk/aws})
+     */
+    void setAgentDir(Optional<String> value);
 }
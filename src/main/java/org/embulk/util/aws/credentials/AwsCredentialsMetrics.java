@@ -0,0 +1,45 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A sink of metrics of credential providers returned from {@link AwsCredentials}, to forward them to a metrics system.
+ *
+ * <p>It is set process-wide by {@link AwsCredentials#setMetrics(AwsCredentialsMetrics)}. Providers are identified by their
+ * descriptions, such as {@code "AssumeRole arn:aws:iam::123456789012:role/example"}, which never contain secrets. Methods
+ * are called in the threads which get or refresh credentials, then they must be thread-safe and return quickly.
+ *
+ * <p>Metrics are also recorded in this library regardless of the sink, and are available through
+ * {@link AwsCredentials#logMetricsSummary()} and JMX with {@code metrics_jmx}.
+ */
+public interface AwsCredentialsMetrics {
+    /**
+     * Records a call of {@link com.amazonaws.auth.AWSCredentialsProvider#getCredentials()}.
+     *
+     * @param provider  The description of the provider
+     * @param cached  {@code true} if it returned cached credentials without waiting for loading them
+     */
+    default void recordGetCredentials(final String provider, final boolean cached) {
+    }
+
+    /**
+     * Records a successful refresh, that is, loading new credentials from the source.
+     *
+     * @param provider  The description of the provider
+     * @param latency  The time taken to load the credentials
+     * @param timeToExpiry  The remaining lifetime of the loaded credentials, or empty if they do not expire
+     */
+    default void recordRefresh(final String provider, final Duration latency, final Optional<Duration> timeToExpiry) {
+    }
+
+    /**
+     * Records a failed refresh.
+     *
+     * @param provider  The description of the provider
+     * @param cause  The cause of the failure, such as an error code of AWS like {@code "Throttling"}, {@code "timeout"}, or
+     *     the name of the exception class
+     */
+    default void recordFailure(final String provider, final String cause) {
+    }
+}
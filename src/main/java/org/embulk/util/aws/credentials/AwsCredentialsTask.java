@@ -1,5 +1,6 @@
 package org.embulk.util.aws.credentials;
 
+import java.util.List;
 import java.util.Optional;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
@@ -67,4 +68,139 @@ public interface AwsCredentialsTask extends AwsCredentialsConfig {
     @Config("session_name")
     @ConfigDefault("\"embulk\"")
     String getSessionName();
+
+    @Override
+    @Config("refresh_mode")
+    @ConfigDefault("\"sync\"")
+    String getRefreshMode();
+
+    @Override
+    @Config("refresh_ahead_seconds")
+    @ConfigDefault("300")
+    int getRefreshAheadSeconds();
+
+    @Override
+    @Config("refresh_jitter_seconds")
+    @ConfigDefault("60")
+    int getRefreshJitterSeconds();
+
+    @Override
+    @Config("stale_while_revalidate")
+    @ConfigDefault("false")
+    boolean getStaleWhileRevalidate();
+
+    @Override
+    @Config("credentials_cache_dir")
+    @ConfigDefault("null")
+    Optional<String> getCredentialsCacheDir();
+
+    @Override
+    @Config("credentials_cache_min_remaining_seconds")
+    @ConfigDefault("900")
+    int getCredentialsCacheMinRemainingSeconds();
+
+    // Not a configuration by users, but set by AwsCredentials.propagateCredentials, and shipped in the task.
+    @Override
+    @ConfigDefault("null")
+    Optional<AwsPropagatedCredentials> getPropagatedCredentials();
+
+    @Override
+    @Config("instance_metadata_endpoint")
+    @ConfigDefault("null")
+    Optional<String> getInstanceMetadataEndpoint();
+
+    @Override
+    @Config("metadata_connect_timeout_millis")
+    @ConfigDefault("1000")
+    int getMetadataConnectTimeoutMillis();
+
+    @Override
+    @Config("metadata_read_timeout_millis")
+    @ConfigDefault("1000")
+    int getMetadataReadTimeoutMillis();
+
+    @Override
+    @Config("metadata_max_retries")
+    @ConfigDefault("1")
+    int getMetadataMaxRetries();
+
+    @Override
+    @Config("default_chain_timeout_millis")
+    @ConfigDefault("5000")
+    int getDefaultChainTimeoutMillis();
+
+    @Override
+    @Config("default_chain_hint_file")
+    @ConfigDefault("null")
+    Optional<String> getDefaultChainHintFile();
+
+    @Override
+    @Config("web_identity_token_file")
+    @ConfigDefault("null")
+    Optional<String> getWebIdentityTokenFile();
+
+    @Override
+    @Config("sts_endpoint")
+    @ConfigDefault("null")
+    Optional<String> getStsEndpoint();
+
+    @Override
+    @Config("credential_process")
+    @ConfigDefault("null")
+    Optional<String> getCredentialProcess();
+
+    @Override
+    @Config("credential_process_timeout_millis")
+    @ConfigDefault("30000")
+    int getCredentialProcessTimeoutMillis();
+
+    @Override
+    @Config("role_chain")
+    @ConfigDefault("[]")
+    List<AwsRoleHop> getRoleChain();
+
+    @Override
+    @Config("sts_region")
+    @ConfigDefault("null")
+    Optional<String> getStsRegion();
+
+    @Override
+    @Config("sts_connect_timeout_millis")
+    @ConfigDefault("10000")
+    int getStsConnectTimeoutMillis();
+
+    @Override
+    @Config("sts_socket_timeout_millis")
+    @ConfigDefault("50000")
+    int getStsSocketTimeoutMillis();
+
+    @Override
+    @Config("sts_rate_limit")
+    @ConfigDefault("10.0")
+    double getStsRateLimit();
+
+    @Override
+    @Config("sts_rate_limit_burst")
+    @ConfigDefault("20")
+    int getStsRateLimitBurst();
+
+    @Override
+    @Config("sts_max_retries")
+    @ConfigDefault("5")
+    int getStsMaxRetries();
+
+    @Override
+    @Config("metrics_jmx")
+    @ConfigDefault("false")
+    boolean getMetricsJmx();
+
+    @Override
+    @Config("agent_source_auth_method")
+    @ConfigDefault("null")
+    Optional<String> getAgentSourceAuthMethod();
+
+    @Override
+    @Config("agent_dir")
+    @ConfigDefault("null")
+    Optional<String> getAgentDir();
 }
@@ -1,5 +1,6 @@
 package org.embulk.util.aws.credentials;
 
+import java.util.List;
 import java.util.Optional;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
@@ -67,4 +68,139 @@ public interface AwsCredentialsTaskWithPrefix extends AwsCredentialsConfig {
     @Config("aws_session_name")
     @ConfigDefault("\"embulk\"")
     String getSessionName();
+
+    @Override
+    @Config("aws_refresh_mode")
+    @ConfigDefault("\"sync\"")
+    String getRefreshMode();
+
+    @Override
+    @Config("aws_refresh_ahead_seconds")
+    @ConfigDefault("300")
+    int getRefreshAheadSeconds();
+
+    @Override
+    @Config("aws_refresh_jitter_seconds")
+    @ConfigDefault("60")
+    int getRefreshJitterSeconds();
+
+    @Override
+    @Config("aws_stale_while_revalidate")
+    @ConfigDefault("false")
+    boolean getStaleWhileRevalidate();
+
+    @Override
+    @Config("aws_credentials_cache_dir")
+    @ConfigDefault("null")
+    Optional<String> getCredentialsCacheDir();
+
+    @Override
+    @Config("aws_credentials_cache_min_remaining_seconds")
+    @ConfigDefault("900")
+    int getCredentialsCacheMinRemainingSeconds();
+
+    // Not a configuration by users, but set by AwsCredentials.propagateCredentials, and shipped in the task.
+    @Override
+    @ConfigDefault("null")
+    Optional<AwsPropagatedCredentials> getPropagatedCredentials();
+
+    @Override
+    @Config("aws_instance_metadata_endpoint")
+    @ConfigDefault("null")
+    Optional<String> getInstanceMetadataEndpoint();
+
+    @Override
+    @Config("aws_metadata_connect_timeout_millis")
+    @ConfigDefault("1000")
+    int getMetadataConnectTimeoutMillis();
+
+    @Override
+    @Config("aws_metadata_read_timeout_millis")
+    @ConfigDefault("1000")
+    int getMetadataReadTimeoutMillis();
+
+    @Override
+    @Config("aws_metadata_max_retries")
+    @ConfigDefault("1")
+    int getMetadataMaxRetries();
+
+    @Override
+    @Config("aws_default_chain_timeout_millis")
+    @ConfigDefault("5000")
+    int getDefaultChainTimeoutMillis();
+
+    @Override
+    @Config("aws_default_chain_hint_file")
+    @ConfigDefault("null")
+    Optional<String> getDefaultChainHintFile();
+
+    @Override
+    @Config("aws_web_identity_token_file")
+    @ConfigDefault("null")
+    Optional<String> getWebIdentityTokenFile();
+
+    @Override
+    @Config("aws_sts_endpoint")
+    @ConfigDefault("null")
+    Optional<String> getStsEndpoint();
+
+    @Override
+    @Config("aws_credential_process")
+    @ConfigDefault("null")
+    Optional<String> getCredentialProcess();
+
+    @Override
+    @Config("aws_credential_process_timeout_millis")
+    @ConfigDefault("30000")
+    int getCredentialProcessTimeoutMillis();
+
+    @Override
+    @Config("aws_role_chain")
+    @ConfigDefault("[]")
+    List<AwsRoleHop> getRoleChain();
+
+    @Override
+    @Config("aws_sts_region")
+    @ConfigDefault("null")
+    Optional<String> getStsRegion();
+
+    @Override
+    @Config("aws_sts_connect_timeout_millis")
+    @ConfigDefault("10000")
+    int getStsConnectTimeoutMillis();
+
+    @Override
+    @Config("aws_sts_socket_timeout_millis")
+    @ConfigDefault("50000")
+    int getStsSocketTimeoutMillis();
+
+    @Override
+    @Config("aws_sts_rate_limit")
+    @ConfigDefault("10.0")
+    double getStsRateLimit();
+
+    @Override
+    @Config("aws_sts_rate_limit_burst")
+    @ConfigDefault("20")
+    int getStsRateLimitBurst();
+
+    @Override
+    @Config("aws_sts_max_retries")
+    @ConfigDefault("5")
+    int getStsMaxRetries();
+
+    @Override
+    @Config("aws_metrics_jmx")
+    @ConfigDefault("false")
+    boolean getMetricsJmx();
+
+    @Override
+    @Config("aws_agent_source_auth_method")
+    @ConfigDefault("null")
+    Optional<String> getAgentSourceAuthMethod();
+
+    @Override
+    @Config("aws_agent_dir")
+    @ConfigDefault("null")
+    Optional<String> getAgentDir();
 }
@@ -0,0 +1,101 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Short-lived session credentials resolved in the coordinator, and shipped to workers in the task definition.
+ *
+ * <p>It is set by {@link AwsCredentials#propagateCredentials(AwsCredentialsTask)} and
+ * {@link AwsCredentials#propagateCredentials(AwsCredentialsTaskWithPrefix)}. It is not expected to be configured by users.
+ *
+ * <p>Its {@link #toString()} redacts the secret access key and the session token so that they are not leaked into logs.
+ */
+public final class AwsPropagatedCredentials {
+    @JsonCreator
+    public AwsPropagatedCredentials(
+            @JsonProperty("access_key_id") final String accessKeyId,
+            @JsonProperty("secret_access_key") final String secretAccessKey,
+            @JsonProperty("session_token") final String sessionToken,
+            @JsonProperty("expiration") final String expiration) {
+        this.accessKeyId = accessKeyId;
+        this.secretAccessKey = secretAccessKey;
+        this.sessionToken = sessionToken;
+        this.expiration = expiration;
+    }
+
+    static AwsPropagatedCredentials of(final AWSSessionCredentials credentials, final Optional<Instant> expiration) {
+        return new AwsPropagatedCredentials(
+                credentials.getAWSAccessKeyId(),
+                credentials.getAWSSecretKey(),
+                credentials.getSessionToken(),
+                expiration.map(Instant::toString).orElse(null));
+    }
+
+    @JsonProperty("access_key_id")
+    public String getAccessKeyId() {
+        return this.accessKeyId;
+    }
+
+    @JsonProperty("secret_access_key")
+    public String getSecretAccessKey() {
+        return this.secretAccessKey;
+    }
+
+    @JsonProperty("session_token")
+    public String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    /**
+     * Gets the expiration in ISO-8601, or {@code null} if it does not expire.
+     *
+     * @return The expiration in ISO-8601 (For example, {@code 2011-07-15T23:28:33.359Z}), or {@code null}
+     */
+    @JsonProperty("expiration")
+    public String getExpiration() {
+        return this.expiration;
+    }
+
+    ExpiringCredentials toExpiringCredentials() {
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(this.accessKeyId, this.secretAccessKey, this.sessionToken),
+                Optional.ofNullable(this.expiration).map(Instant::parse));
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        }
+        if (!(otherObject instanceof AwsPropagatedCredentials)) {
+            return false;
+        }
+        final AwsPropagatedCredentials other = (AwsPropagatedCredentials) otherObject;
+        return Objects.equals(this.accessKeyId, other.accessKeyId)
+                && Objects.equals(this.secretAccessKey, other.secretAccessKey)
+                && Objects.equals(this.sessionToken, other.sessionToken)
+                && Objects.equals(this.expiration, other.expiration);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.accessKeyId, this.secretAccessKey, this.sessionToken, this.expiration);
+    }
+
+    @Override
+    public String toString() {
+        return "AwsPropagatedCredentials{accessKeyId=" + this.accessKeyId
+                + ", secretAccessKey=<redacted>, sessionToken=<redacted>, expiration=" + this.expiration + "}";
+    }
+
+    private final String accessKeyId;
+    private final String secretAccessKey;
+    private final String sessionToken;
+    private final String expiration;
+}
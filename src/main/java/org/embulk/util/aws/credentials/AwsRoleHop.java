@@ -0,0 +1,109 @@
+package org.embulk.util.aws.credentials;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+
+/**
+ * An intermediate role to assume in a role chain, before the role of {@code account_id} and {@code role_name}.
+ *
+ * <p>It is configured as an element of {@code role_chain}, for example:
+ *
+ * <pre>{@code
+ * auth_method: assume_role
+ * role_chain:
+ *   - {account_id: "111111111111", role_name: ingest}
+ *   - {account_id: "222222222222", role_name: data-lake, external_id: lake-external-id}
+ * account_id: "333333333333"
+ * role_name: bucket-owner
+ * }</pre>
+ *
+ * @see <a href="https://docs.aws.amazon.com/IAM/latest/UserGuide/id_roles_terms-and-concepts.html#iam-term-role-chaining">Role chaining</a>
+ */
+public final class AwsRoleHop {
+    @JsonCreator
+    public AwsRoleHop(
+            @JsonProperty("account_id") final String accountId,
+            @JsonProperty("role_name") final String roleName,
+            @JsonProperty("external_id") final String externalId,
+            @JsonProperty("duration_in_seconds") final Integer durationInSeconds,
+            @JsonProperty("session_name") final String sessionName) {
+        this.accountId = accountId;
+        this.roleName = roleName;
+        this.externalId = externalId;
+        this.durationInSeconds = durationInSeconds;
+        this.sessionName = sessionName;
+    }
+
+    @JsonProperty("account_id")
+    public String getAccountId() {
+        return this.accountId;
+    }
+
+    @JsonProperty("role_name")
+    public String getRoleName() {
+        return this.roleName;
+    }
+
+    /**
+     * Gets the External ID to assume the role with, or {@code null} if not specified.
+     *
+     * @return The External ID, or {@code null}
+     */
+    @JsonProperty("external_id")
+    public String getExternalId() {
+        return this.externalId;
+    }
+
+    /**
+     * Gets the Duration in seconds of the role session, or {@code null} to follow {@code duration_in_seconds} of the task.
+     *
+     * @return The Duration in seconds, or {@code null}
+     */
+    @JsonProperty("duration_in_seconds")
+    public Integer getDurationInSeconds() {
+        return this.durationInSeconds;
+    }
+
+    /**
+     * Gets the Role session name, or {@code null} to follow {@code session_name} of the task.
+     *
+     * @return The Role session name, or {@code null}
+     */
+    @JsonProperty("session_name")
+    public String getSessionName() {
+        return this.sessionName;
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        }
+        if (!(otherObject instanceof AwsRoleHop)) {
+            return false;
+        }
+        final AwsRoleHop other = (AwsRoleHop) otherObject;
+        return Objects.equals(this.accountId, other.accountId)
+                && Objects.equals(this.roleName, other.roleName)
+                && Objects.equals(this.externalId, other.externalId)
+                && Objects.equals(this.durationInSeconds, other.durationInSeconds)
+                && Objects.equals(this.sessionName, other.sessionName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.accountId, this.roleName, this.externalId, this.durationInSeconds, this.sessionName);
+    }
+
+    @Override
+    public String toString() {
+        return "AwsRoleHop{accountId=" + this.accountId + ", roleName=" + this.roleName + "}";
+    }
+
+    private final String accountId;
+    private final String roleName;
+    private final String externalId;
+    private final Integer durationInSeconds;
+    private final String sessionName;
+}
@@ -0,0 +1,50 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code auth_method: basic}, with {@code access_key_id} and {@code secret_access_key}.
+ */
+final class BasicAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        // for backward compatibility
+        if (!task.getAccessKeyId().isPresent() && !task.getAccessKeyId().isPresent()) {
+            log.warn("Both '{}' and '{}' are not set. Assuming that '{}: anonymous' option is set.",
+                    prefix + "access_key_id", prefix + "secret_access_key", prefix + "auth_method");
+            log.warn("If you intentionally use anonymous authentication, please set 'auth_method: anonymous' option.");
+            log.warn("This behavior will be removed in a future release.");
+            return AnonymousAuthMethod.createProvider();
+        }
+        final String accessKeyId = AuthMethods.require(task.getAccessKeyId(), "'access_key_id', 'secret_access_key'");
+        final String secretAccessKey = AuthMethods.require(task.getSecretAccessKey(), "'secret_access_key'");
+        final BasicAWSCredentials creds = new BasicAWSCredentials(accessKeyId, secretAccessKey);
+        final CredentialsMetrics metrics = CredentialsMetrics.of("basic credentials");
+        return new AWSCredentialsProvider() {
+            public AWSCredentials getCredentials() {
+                metrics.recordGetCredentials(true);
+                return creds;
+            }
+
+            public void refresh() {
+            }
+        };
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BasicAuthMethod.class);
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.ACCESS_KEY_ID, AuthOption.SECRET_ACCESS_KEY));
+}
@@ -0,0 +1,24 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.Collections;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+
+/**
+ * {@code auth_method: container}, with the container credentials endpoint of Amazon ECS or else.
+ */
+final class ContainerAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String endpoint = ContainerCredentialsProvider.resolveEndpoint().orElseThrow(() -> new ConfigException(
+                "Neither " + ContainerCredentialsProvider.RELATIVE_URI_ENVIRONMENT_VARIABLE + " nor "
+                + ContainerCredentialsProvider.FULL_URI_ENVIRONMENT_VARIABLE + " is set for '" + prefix + "auth_method: container'."));
+        return new ContainerCredentialsProvider(endpoint, MetadataHttpClient.of(task, prefix), refreshSettings);
+    }
+}
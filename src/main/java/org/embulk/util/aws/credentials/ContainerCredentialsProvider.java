@@ -0,0 +1,171 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} for the container credentials endpoint of Amazon ECS, AWS Fargate, or
+ * Amazon EKS Pod Identity, refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>Credentials are cached process-wide per endpoint in {@link SharedCredentialsCache}. A provider fetches credentials
+ * from the endpoint only when the shared credentials are about to enter its refresh window.
+ */
+final class ContainerCredentialsProvider extends RefreshableCredentialsProvider {
+    ContainerCredentialsProvider(final String endpoint, final MetadataHttpClient client, final RefreshSettings settings) {
+        this(endpoint, client, settings, System::getenv);
+    }
+
+    ContainerCredentialsProvider(
+            final String endpoint,
+            final MetadataHttpClient client,
+            final RefreshSettings settings,
+            final Function<String, String> environment) {
+        super("container credentials " + endpoint, settings);
+        this.endpoint = endpoint;
+        this.client = client;
+        this.environment = environment;
+
+        // Shared credentials must outlive the refresh window. Otherwise, they would be fetched again right away.
+        this.sharedMinRemaining = settings.getRefreshAhead()
+                .plus(settings.getRefreshJitter())
+                .plus(BLOCKING_REFRESH_MARGIN);
+    }
+
+    /**
+     * Resolves the endpoint from {@code AWS_CONTAINER_CREDENTIALS_RELATIVE_URI} or {@code AWS_CONTAINER_CREDENTIALS_FULL_URI}.
+     *
+     * @return The endpoint, or empty if neither of the environment variables is set
+     */
+    static Optional<String> resolveEndpoint() {
+        return resolveEndpoint(System::getenv);
+    }
+
+    static Optional<String> resolveEndpoint(final Function<String, String> environment) {
+        final String relativeUri = environment.apply(RELATIVE_URI_ENVIRONMENT_VARIABLE);
+        if (relativeUri != null && !relativeUri.isEmpty()) {
+            return Optional.of(ECS_ENDPOINT + relativeUri);
+        }
+        final String fullUri = environment.apply(FULL_URI_ENVIRONMENT_VARIABLE);
+        if (fullUri != null && !fullUri.isEmpty()) {
+            checkFullUri(fullUri);
+            return Optional.of(fullUri);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        return SharedCredentialsCache.get(this.endpoint, this.sharedMinRemaining, this::fetch);
+    }
+
+    private ExpiringCredentials fetch() {
+        final MetadataHttpClient.Response response = this.client.get(this.endpoint, this.authorizationHeader());
+        if (!response.isSuccessful()) {
+            throw new SdkClientException("Unable to load credentials from the container credentials endpoint: HTTP " + response.getStatus());
+        }
+        final JsonNode credentials;
+        try {
+            credentials = MAPPER.readTree(response.getBody());
+        } catch (final IOException ex) {
+            throw new SdkClientException("Unable to parse credentials from the container credentials endpoint.", ex);
+        }
+        if (credentials == null || !credentials.hasNonNull("AccessKeyId") || !credentials.hasNonNull("SecretAccessKey")) {
+            throw new SdkClientException("No credentials in the response from the container credentials endpoint.");
+        }
+        final Optional<Instant> expiration;
+        if (credentials.hasNonNull("Expiration")) {
+            expiration = Optional.of(Instant.parse(credentials.get("Expiration").asText()));
+        } else {
+            expiration = Optional.empty();
+        }
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(
+                        credentials.path("AccessKeyId").asText(),
+                        credentials.path("SecretAccessKey").asText(),
+                        credentials.path("Token").asText()),
+                expiration);
+    }
+
+    // The token file is read on every fetch because it may be rotated, as in Amazon EKS Pod Identity.
+    private Map<String, String> authorizationHeader() {
+        final String tokenFile = this.environment.apply(AUTHORIZATION_TOKEN_FILE_ENVIRONMENT_VARIABLE);
+        if (tokenFile != null && !tokenFile.isEmpty()) {
+            try {
+                final String token = new String(Files.readAllBytes(Paths.get(tokenFile)), StandardCharsets.UTF_8).trim();
+                return Collections.singletonMap(AUTHORIZATION_HEADER, token);
+            } catch (final IOException ex) {
+                throw new SdkClientException("Unable to read the container authorization token file: " + tokenFile, ex);
+            }
+        }
+        final String token = this.environment.apply(AUTHORIZATION_TOKEN_ENVIRONMENT_VARIABLE);
+        if (token != null && !token.isEmpty()) {
+            return Collections.singletonMap(AUTHORIZATION_HEADER, token);
+        }
+        return Collections.emptyMap();
+    }
+
+    // Credentials must not be sent in plain HTTP to anywhere other than the local or link-local container endpoints.
+    private static void checkFullUri(final String fullUri) {
+        final URI uri;
+        try {
+            uri = URI.create(fullUri);
+        } catch (final IllegalArgumentException ex) {
+            throw new SdkClientException("Invalid " + FULL_URI_ENVIRONMENT_VARIABLE + ": " + fullUri, ex);
+        }
+        if ("https".equalsIgnoreCase(uri.getScheme())) {
+            return;
+        }
+        if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            throw new SdkClientException("Invalid " + FULL_URI_ENVIRONMENT_VARIABLE + ": " + fullUri);
+        }
+        try {
+            for (final InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+                if (!address.isLoopbackAddress() && !ALLOWED_HTTP_HOSTS.contains(address.getHostAddress())) {
+                    throw new SdkClientException(FULL_URI_ENVIRONMENT_VARIABLE + " must be HTTPS, or HTTP to a loopback address or "
+                            + ALLOWED_HTTP_HOSTS + ": " + fullUri);
+                }
+            }
+        } catch (final UnknownHostException ex) {
+            throw new SdkClientException("Unable to resolve the host of " + FULL_URI_ENVIRONMENT_VARIABLE + ": " + fullUri, ex);
+        }
+    }
+
+    static final String RELATIVE_URI_ENVIRONMENT_VARIABLE = "AWS_CONTAINER_CREDENTIALS_RELATIVE_URI";
+    static final String FULL_URI_ENVIRONMENT_VARIABLE = "AWS_CONTAINER_CREDENTIALS_FULL_URI";
+
+    static final String AUTHORIZATION_TOKEN_ENVIRONMENT_VARIABLE = "AWS_CONTAINER_AUTHORIZATION_TOKEN";
+    static final String AUTHORIZATION_TOKEN_FILE_ENVIRONMENT_VARIABLE = "AWS_CONTAINER_AUTHORIZATION_TOKEN_FILE";
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private static final String ECS_ENDPOINT = "http://169.254.170.2";
+
+    // The link-local endpoints of Amazon ECS, and Amazon EKS Pod Identity in IPv4 and IPv6.
+    private static final Set<String> ALLOWED_HTTP_HOSTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "169.254.170.2", "169.254.170.23", "fd00:ec2:0:0:0:0:0:23")));
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String endpoint;
+    private final MetadataHttpClient client;
+    private final Function<String, String> environment;
+    private final Duration sharedMinRemaining;
+}
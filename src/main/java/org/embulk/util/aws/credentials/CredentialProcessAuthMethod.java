@@ -0,0 +1,65 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.profile.path.AwsProfileFileLocationProvider;
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+
+/**
+ * {@code auth_method: credential_process}, with {@code credential_process}, or {@code credential_process} in the profile.
+ */
+final class CredentialProcessAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        if (task.getCredentialProcessTimeoutMillis() <= 0) {
+            throw new ConfigException("'" + prefix + "credential_process_timeout_millis' must be positive.");
+        }
+
+        final String command;
+        if (task.getCredentialProcess().isPresent()) {
+            AuthOption.PROFILE_FILE.reject(prefix, task);
+            AuthOption.PROFILE_NAME.reject(prefix, task);
+            command = task.getCredentialProcess().get();
+        } else {
+            command = findCredentialProcess(task.getProfileFile(), task.getProfileName().orElse("default")).orElseThrow(() ->
+                    new ConfigException("Required option is not set: '" + prefix + "credential_process"
+                            + "' (or credential_process in the profile)"));
+        }
+        return new ProcessCredentialsProvider(
+                command, Duration.ofMillis(task.getCredentialProcessTimeoutMillis()), refreshSettings);
+    }
+
+    private static Optional<String> findCredentialProcess(final Optional<String> profileFile, final String profileName) {
+        final List<File> files = new ArrayList<>();
+        if (profileFile.isPresent()) {
+            files.add(new File(profileFile.get()));
+        } else {
+            files.add(AwsProfileFileLocationProvider.DEFAULT_CONFIG_LOCATION_PROVIDER.getLocation());
+            files.add(AwsProfileFileLocationProvider.DEFAULT_CREDENTIALS_LOCATION_PROVIDER.getLocation());
+        }
+        for (final File file : files) {
+            if (file != null && file.isFile()) {
+                final Optional<String> command = ProfileFileCache.getProperty(file.toPath(), profileName, "credential_process");
+                if (command.isPresent()) {
+                    return command;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.PROFILE_FILE, AuthOption.PROFILE_NAME, AuthOption.CREDENTIAL_PROCESS));
+}
@@ -0,0 +1,109 @@
+package org.embulk.util.aws.credentials;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An identity of resolved credential configurations.
+ *
+ * <p>Two keys are equal when all the values of {@link AwsCredentialsConfig} are equal, regardless of whether they came from
+ * {@link AwsCredentialsTask} or {@link AwsCredentialsTaskWithPrefix}. It intentionally has no {@code toString} with values
+ * not to leak secrets into logs.
+ */
+final class CredentialsConfigKey {
+    private CredentialsConfigKey(final List<Object> values) {
+        this.values = values;
+    }
+
+    static CredentialsConfigKey of(final AwsCredentialsConfig task) {
+        final ArrayList<Object> values = new ArrayList<>(GETTERS.size());
+        for (final Method getter : GETTERS) {
+            try {
+                final Object value = getter.invoke(task);
+                // Optional getters which are not mapped from ConfigSource return null, which is the same as empty.
+                values.add(value == null && getter.getReturnType() == Optional.class ? Optional.empty() : value);
+            } catch (final IllegalAccessException ex) {
+                throw new IllegalStateException("Failed to access " + getter.getName(), ex);
+            } catch (final InvocationTargetException ex) {
+                throw new IllegalStateException("Failed to get " + getter.getName(), ex.getCause());
+            }
+        }
+        return new CredentialsConfigKey(Collections.unmodifiableList(values));
+    }
+
+    /**
+     * Returns a digest of the values, which is stable across processes, to identify the configuration in shared files.
+     *
+     * <p>The propagated credentials are not a part of it, as they are not a part of the configuration to resolve credentials.
+     */
+    String fingerprint() {
+        final ArrayList<String> parts = new ArrayList<>(GETTERS.size() * 2);
+        for (int i = 0; i < GETTERS.size(); i++) {
+            final String name = GETTERS.get(i).getName();
+            if (!"getPropagatedCredentials".equals(name)) {
+                parts.add(name);
+                parts.add(describe(this.values.get(i)));
+            }
+        }
+        return FileCredentialsCache.key(parts.toArray(new String[0]));
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        }
+        if (!(otherObject instanceof CredentialsConfigKey)) {
+            return false;
+        }
+        final CredentialsConfigKey other = (CredentialsConfigKey) otherObject;
+        return this.values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialsConfigKey@" + Integer.toHexString(this.hashCode());
+    }
+
+    private static String describe(final Object value) {
+        if (value instanceof Optional) {
+            return ((Optional<?>) value).isPresent() ? describe(((Optional<?>) value).get()) : "null";
+        }
+        try {
+            // AwsRoleHop is serialized with its properties, unlike its toString.
+            return MAPPER.writeValueAsString(value);
+        } catch (final JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to describe a credential configuration.", ex);
+        }
+    }
+
+    private static List<Method> listGetters() {
+        final ArrayList<Method> getters = new ArrayList<>();
+        for (final Method method : AwsCredentialsConfig.class.getMethods()) {
+            if (method.getName().startsWith("get") && method.getParameterCount() == 0) {
+                getters.add(method);
+            }
+        }
+        getters.sort(Comparator.comparing(Method::getName));
+        return Collections.unmodifiableList(getters);
+    }
+
+    // All getters in AwsCredentialsConfig so that a newly-added option is never missed from the key.
+    private static final List<Method> GETTERS = listGetters();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<Object> values;
+}
@@ -0,0 +1,246 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.AmazonServiceException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of a credential provider, recorded process-wide per description of the provider.
+ *
+ * <p>Providers with the same description, such as providers which assume the same role, share their metrics. Every record
+ * is also forwarded to {@link AwsCredentialsMetrics} set by {@link AwsCredentials#setMetrics(AwsCredentialsMetrics)}, if any.
+ * Recording {@link #recordGetCredentials(boolean)} is only a few non-blocking increments so that it is cheap on the hot path.
+ */
+final class CredentialsMetrics {
+    private CredentialsMetrics(final String provider) {
+        this.provider = provider;
+        this.getCredentials = new LongAdder();
+        this.cached = new LongAdder();
+        this.refreshLatency = new LatencyHistogram();
+        this.failures = new ConcurrentHashMap<>();
+        this.expiration = Optional.empty();
+    }
+
+    static CredentialsMetrics of(final String provider) {
+        final CredentialsMetrics existing = REGISTRY.get(provider);
+        if (existing != null) {
+            return existing;
+        }
+        final CredentialsMetrics created = REGISTRY.computeIfAbsent(provider, CredentialsMetrics::new);
+        if (jmxEnabled) {
+            created.registerMBean();
+        }
+        return created;
+    }
+
+    static void setSink(final Optional<AwsCredentialsMetrics> sink) {
+        CredentialsMetrics.sink = sink.orElse(null);
+    }
+
+    /**
+     * Registers MBeans of all the providers, including ones created later, to the platform MBean server.
+     */
+    static synchronized void enableJmx() {
+        if (jmxEnabled) {
+            return;
+        }
+        jmxEnabled = true;
+        for (final CredentialsMetrics metrics : REGISTRY.values()) {
+            metrics.registerMBean();
+        }
+    }
+
+    /**
+     * Lists the metrics of providers which have been used, in the order of their descriptions.
+     */
+    static List<CredentialsMetrics> listUsed() {
+        final ArrayList<CredentialsMetrics> used = new ArrayList<>();
+        for (final CredentialsMetrics metrics : new TreeMap<>(REGISTRY).values()) {
+            if (metrics.getGetCredentialsCount() > 0 || metrics.getRefreshCount() > 0 || metrics.getFailureCount() > 0) {
+                used.add(metrics);
+            }
+        }
+        return Collections.unmodifiableList(used);
+    }
+
+    void recordGetCredentials(final boolean cached) {
+        this.getCredentials.increment();
+        if (cached) {
+            this.cached.increment();
+        }
+        final AwsCredentialsMetrics sink = CredentialsMetrics.sink;
+        if (sink != null) {
+            try {
+                sink.recordGetCredentials(this.provider, cached);
+            } catch (final RuntimeException ex) {
+                warnSinkFailure(ex);
+            }
+        }
+    }
+
+    void recordRefresh(final Duration latency, final Optional<Instant> expiration) {
+        this.refreshLatency.record(latency);
+        this.expiration = expiration;
+        final AwsCredentialsMetrics sink = CredentialsMetrics.sink;
+        if (sink != null) {
+            try {
+                sink.recordRefresh(this.provider, latency, expiration.map(expiresAt -> Duration.between(Instant.now(), expiresAt)));
+            } catch (final RuntimeException ex) {
+                warnSinkFailure(ex);
+            }
+        }
+    }
+
+    void recordFailure(final Throwable exception) {
+        final String cause = causeOf(exception);
+        this.failures.computeIfAbsent(cause, key -> new LongAdder()).increment();
+        final AwsCredentialsMetrics sink = CredentialsMetrics.sink;
+        if (sink != null) {
+            try {
+                sink.recordFailure(this.provider, cause);
+            } catch (final RuntimeException ex) {
+                warnSinkFailure(ex);
+            }
+        }
+    }
+
+    String getProvider() {
+        return this.provider;
+    }
+
+    long getGetCredentialsCount() {
+        return this.getCredentials.sum();
+    }
+
+    long getCachedCount() {
+        return this.cached.sum();
+    }
+
+    long getRefreshCount() {
+        return this.refreshLatency.getCount();
+    }
+
+    LatencyHistogram getRefreshLatency() {
+        return this.refreshLatency;
+    }
+
+    /**
+     * Returns the numbers of failures by cause, in the order of causes.
+     */
+    Map<String, Long> getFailures() {
+        final TreeMap<String, Long> failures = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> entry : this.failures.entrySet()) {
+            failures.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(failures);
+    }
+
+    long getFailureCount() {
+        long count = 0;
+        for (final LongAdder failures : this.failures.values()) {
+            count += failures.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the remaining lifetime of the credentials refreshed last, or empty if they do not expire or nothing is refreshed.
+     */
+    Optional<Duration> getTimeToExpiry() {
+        return this.expiration.map(expiresAt -> Duration.between(Instant.now(), expiresAt));
+    }
+
+    String summarize() {
+        final StringBuilder summary = new StringBuilder()
+                .append(this.provider).append(": ")
+                .append(this.getGetCredentialsCount()).append(" getCredentials (").append(this.getCachedCount()).append(" cached), ")
+                .append(this.getRefreshCount()).append(" refreshes");
+        if (this.getRefreshCount() > 0) {
+            summary.append(" (p50 ").append(this.refreshLatency.getPercentile(50.0).toMillis())
+                    .append(" ms, p99 ").append(this.refreshLatency.getPercentile(99.0).toMillis())
+                    .append(" ms, max ").append(this.refreshLatency.getMax().toMillis()).append(" ms)");
+        }
+        summary.append(", ").append(this.getFailureCount()).append(" failures");
+        if (this.getFailureCount() > 0) {
+            summary.append(" ").append(this.getFailures());
+        }
+        final Optional<Duration> timeToExpiry = this.getTimeToExpiry();
+        if (timeToExpiry.isPresent()) {
+            summary.append(", expiring in ").append(timeToExpiry.get().getSeconds()).append(" s");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Classifies a failure by an error code of AWS, such as {@code "Throttling"}, a timeout, a connection failure, or else the
+     * name of the exception class.
+     */
+    static String causeOf(final Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof AmazonServiceException && ((AmazonServiceException) cause).getErrorCode() != null) {
+                return ((AmazonServiceException) cause).getErrorCode();
+            }
+            if (cause instanceof SocketTimeoutException) {
+                return "timeout";
+            }
+            if (cause instanceof ConnectException) {
+                return "connection";
+            }
+        }
+        return exception.getClass().getSimpleName();
+    }
+
+    private void registerMBean() {
+        try {
+            final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=CredentialsProvider,name=" + ObjectName.quote(this.provider));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new CredentialsMetricsMBean(this), name);
+        } catch (final InstanceAlreadyExistsException ex) {
+            // Registered by another class loader of this library.
+        } catch (final JMException ex) {
+            log.warn("Failed to register metrics of {} to JMX.", this.provider, ex);
+        }
+    }
+
+    private static void warnSinkFailure(final RuntimeException ex) {
+        if (SINK_FAILURE_WARNED.compareAndSet(false, true)) {
+            log.warn("AwsCredentialsMetrics failed to record a metric. Further failures are not logged.", ex);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CredentialsMetrics.class);
+
+    static final String JMX_DOMAIN = "org.embulk.util.aws.credentials";
+
+    private static final ConcurrentHashMap<String, CredentialsMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private static final AtomicBoolean SINK_FAILURE_WARNED = new AtomicBoolean(false);
+
+    private static volatile AwsCredentialsMetrics sink = null;
+
+    private static volatile boolean jmxEnabled = false;
+
+    private final String provider;
+    private final LongAdder getCredentials;
+    private final LongAdder cached;
+    private final LatencyHistogram refreshLatency;
+    private final ConcurrentHashMap<String, LongAdder> failures;
+
+    private volatile Optional<Instant> expiration;
+}
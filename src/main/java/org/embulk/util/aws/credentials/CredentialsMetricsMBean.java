@@ -0,0 +1,92 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * A read-only MBean of {@link CredentialsMetrics}.
+ *
+ * <p>It is a {@link javax.management.DynamicMBean} so that this library does not expose an MBean interface in its API.
+ */
+final class CredentialsMetricsMBean implements DynamicMBean {
+    CredentialsMetricsMBean(final CredentialsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Function<CredentialsMetrics, Object> getter = ATTRIBUTES.get(attribute);
+        if (getter == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return getter.apply(this.metrics);
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            final Function<CredentialsMetrics, Object> getter = ATTRIBUTES.get(attribute);
+            if (getter != null) {
+                list.add(new Attribute(attribute, getter.apply(this.metrics)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.size()];
+        int i = 0;
+        for (final String name : ATTRIBUTES.keySet()) {
+            final String type = "Provider".equals(name) || "Failures".equals(name) ? String.class.getName() : Long.class.getName();
+            attributes[i++] = new MBeanAttributeInfo(name, type, name, true, false, false);
+        }
+        return new MBeanInfo(
+                CredentialsMetricsMBean.class.getName(), "Metrics of an AWS credential provider", attributes, null, new MBeanOperationInfo[0], null);
+    }
+
+    private static Map<String, Function<CredentialsMetrics, Object>> attributes() {
+        final LinkedHashMap<String, Function<CredentialsMetrics, Object>> attributes = new LinkedHashMap<>();
+        attributes.put("Provider", CredentialsMetrics::getProvider);
+        attributes.put("GetCredentialsCount", CredentialsMetrics::getGetCredentialsCount);
+        attributes.put("CachedCount", CredentialsMetrics::getCachedCount);
+        attributes.put("RefreshCount", CredentialsMetrics::getRefreshCount);
+        attributes.put("RefreshLatencyP50Millis", metrics -> metrics.getRefreshLatency().getPercentile(50.0).toMillis());
+        attributes.put("RefreshLatencyP99Millis", metrics -> metrics.getRefreshLatency().getPercentile(99.0).toMillis());
+        attributes.put("RefreshLatencyMaxMillis", metrics -> metrics.getRefreshLatency().getMax().toMillis());
+        attributes.put("FailureCount", CredentialsMetrics::getFailureCount);
+        attributes.put("Failures", metrics -> metrics.getFailures().toString());
+        // -1 if the credentials do not expire, or nothing is refreshed.
+        attributes.put("TimeToExpirySeconds", metrics -> metrics.getTimeToExpiry().map(Duration::getSeconds).orElse(-1L));
+        return attributes;
+    }
+
+    private static final Map<String, Function<CredentialsMetrics, Object>> ATTRIBUTES = attributes();
+
+    private final CredentialsMetrics metrics;
+}
@@ -0,0 +1,48 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide pool of daemon threads which resolves the first credentials of providers for the asynchronous API of
+ * {@link AwsCredentials}.
+ *
+ * <p>Resolutions mostly wait on STS, the EC2 instance metadata service, or else. They run at most
+ * {@link #MAX_CONCURRENT_RESOLUTIONS} at a time so that a plugin resolving credentials for dozens of configurations at startup
+ * does not call them all at once. The rest wait in the queue.
+ */
+final class CredentialsResolver {
+    private CredentialsResolver() {
+        this.workers = new ThreadPoolExecutor(
+                MAX_CONCURRENT_RESOLUTIONS,
+                MAX_CONCURRENT_RESOLUTIONS,
+                WORKER_KEEP_ALIVE.toMillis(),
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                RefreshScheduler.daemonThreads("embulk-aws-credentials-resolver"));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    static CredentialsResolver shared() {
+        return Holder.INSTANCE;
+    }
+
+    <T> CompletableFuture<T> supply(final Supplier<T> resolution) {
+        return CompletableFuture.supplyAsync(resolution, this.workers);
+    }
+
+    // Initialized on the first use so that processes without the asynchronous API never start the threads.
+    private static final class Holder {
+        private static final CredentialsResolver INSTANCE = new CredentialsResolver();
+    }
+
+    static final int MAX_CONCURRENT_RESOLUTIONS = 8;
+
+    private static final Duration WORKER_KEEP_ALIVE = Duration.ofSeconds(60);
+
+    private final ThreadPoolExecutor workers;
+}
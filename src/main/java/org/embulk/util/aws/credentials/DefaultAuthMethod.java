@@ -0,0 +1,24 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@code auth_method: default}, with {@link DefaultCredentialsChain}.
+ */
+final class DefaultAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        return DefaultCredentialsChain.of(task, prefix, refreshSettings);
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.DEFAULT_CHAIN_HINT_FILE, AuthOption.STS_ENDPOINT, AuthOption.STS_REGION, AuthOption.INSTANCE_METADATA_ENDPOINT));
+}
@@ -0,0 +1,122 @@
+package org.embulk.util.aws.credentials;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * What {@link DefaultCredentialsChain} has learned about its sources, shared among the chains of the same configuration in the
+ * process, and optionally across runs.
+ *
+ * <p>It remembers the source which resolved credentials last, so that the next chain can start probing it early. It never
+ * changes the order of the chain. It also remembers sources which failed recently, for {@link #NEGATIVE_CACHE_TTL}, so that
+ * the next chain does not probe them again right away. With a hint file, the last winning source is persisted so that the
+ * next Embulk run can start probing it early, too.
+ */
+final class DefaultChainMemory {
+    DefaultChainMemory(final CredentialsConfigKey configKey, final Optional<Path> hintFile) {
+        this.state = STATES.computeIfAbsent(configKey, key -> new State());
+        this.hintFile = hintFile;
+    }
+
+    Optional<String> getLastWinner() {
+        final String winner = this.state.lastWinner;
+        if (winner != null) {
+            return Optional.of(winner);
+        }
+        if (this.hintFile.isPresent()) {
+            return readHint(this.hintFile.get());
+        }
+        return Optional.empty();
+    }
+
+    boolean hasFailedRecently(final String source) {
+        final Long failedAtNanos = this.state.failures.get(source);
+        if (failedAtNanos == null) {
+            return false;
+        }
+        if (System.nanoTime() - failedAtNanos > NEGATIVE_CACHE_TTL.toNanos()) {
+            this.state.failures.remove(source, failedAtNanos);
+            return false;
+        }
+        return true;
+    }
+
+    void recordFailure(final String source) {
+        this.state.failures.put(source, System.nanoTime());
+    }
+
+    void recordSuccess(final String source) {
+        this.state.failures.remove(source);
+        this.state.lastWinner = source;
+        if (this.hintFile.isPresent() && !readHint(this.hintFile.get()).equals(Optional.of(source))) {
+            writeHint(this.hintFile.get(), source);
+        }
+    }
+
+    private static Optional<String> readHint(final Path file) {
+        try {
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || lines.get(0).trim().isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(lines.get(0).trim());
+        } catch (final NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (final IOException ex) {
+            log.warn("Failed to read the default chain hint file: {}", file, ex);
+            return Optional.empty();
+        }
+    }
+
+    private static void writeHint(final Path file, final String source) {
+        final Path directory = file.toAbsolutePath().getParent();
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.write(temporary, (source + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException ex) {
+            log.warn("Failed to write the default chain hint file: {}", file, ex);
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (final IOException ignored) {
+                    // Nothing to do any more.
+                }
+            }
+        }
+    }
+
+    // What the chains of a configuration have learned. A source which works for one configuration, such as environment
+    // variables, or the instance metadata service at a configured endpoint, may not for another.
+    private static final class State {
+        private State() {
+            this.failures = new ConcurrentHashMap<>();
+            this.lastWinner = null;
+        }
+
+        private final ConcurrentHashMap<String, Long> failures;
+
+        private volatile String lastWinner;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultChainMemory.class);
+
+    static final Duration NEGATIVE_CACHE_TTL = Duration.ofSeconds(60);
+
+    private static final ConcurrentHashMap<CredentialsConfigKey, State> STATES = new ConcurrentHashMap<>();
+
+    private final State state;
+    private final Optional<Path> hintFile;
+}
@@ -0,0 +1,329 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.profile.internal.AwsProfileNameLoader;
+import com.amazonaws.profile.path.AwsProfileFileLocationProvider;
+import com.amazonaws.util.StringUtils;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.embulk.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An Embulk-native alternative of {@link com.amazonaws.auth.DefaultAWSCredentialsProviderChain}.
+ *
+ * <p>It probes the local sources (environment variables, system properties, and the profile file) one by one first. If none
+ * of them has credentials, it probes the network-backed sources (web identity with AWS STS, the container credentials
+ * endpoint, and the EC2 instance metadata service) concurrently, bounded by a timeout. The first valid source in the priority order wins, and is used
+ * afterwards. For example, the instance metadata service is not used while the container credentials endpoint is still
+ * being probed, even if the instance metadata service has responded first.
+ *
+ * <p>It learns from other chains of the same configuration through {@link DefaultChainMemory}. Sources which have failed
+ * recently are probed only when no other source has credentials. The network-backed source which has resolved credentials
+ * before starts being probed early, together with the local sources, but it still wins only in its order in the chain.
+ */
+final class DefaultCredentialsChain implements AWSCredentialsProvider, Closeable {
+    DefaultCredentialsChain(
+            final List<Source> localSources,
+            final List<Source> networkSources,
+            final Duration networkTimeout,
+            final DefaultChainMemory memory) {
+        this.localSources = localSources;
+        this.networkSources = networkSources;
+        this.networkTimeout = networkTimeout;
+        this.memory = memory;
+        this.resolved = null;
+        this.resolvedSource = null;
+    }
+
+    static DefaultCredentialsChain of(final AwsCredentialsConfig task, final String prefix, final RefreshSettings refreshSettings) {
+        if (task.getDefaultChainTimeoutMillis() <= 0) {
+            throw new ConfigException("'" + prefix + "default_chain_timeout_millis' must be positive.");
+        }
+        final MetadataHttpClient metadataClient = MetadataHttpClient.of(task, prefix);
+        final SecurityTokenServiceClients.Settings stsSettings = SecurityTokenServiceClients.Settings.of(task, prefix);
+        final String instanceMetadataEndpoint = InstanceMetadataCredentialsProvider.resolveEndpoint(task.getInstanceMetadataEndpoint());
+        final List<Source> networkSources = new ArrayList<>();
+        if (AuthMethods.isAvailable("web_identity")) {
+            networkSources.add(new Source("web_identity", () -> createWebIdentityProvider(task, stsSettings, refreshSettings)));
+        } else {
+            log.debug("Web identity is not probed in the default chain without com.amazonaws:aws-java-sdk-sts.");
+        }
+        networkSources.add(new Source("container", () -> createContainerProvider(metadataClient, refreshSettings)));
+        networkSources.add(new Source("instance", () -> new InstanceMetadataCredentialsProvider(
+                instanceMetadataEndpoint, metadataClient, refreshSettings)));
+        return new DefaultCredentialsChain(
+                Arrays.asList(
+                        new Source("env", ReloadingCredentialsProvider::ofEnvironmentVariables),
+                        new Source("properties", ReloadingCredentialsProvider::ofSystemProperties),
+                        new Source("profile", DefaultCredentialsChain::createDefaultProfileProvider)),
+                Collections.unmodifiableList(networkSources),
+                Duration.ofMillis(task.getDefaultChainTimeoutMillis()),
+                new DefaultChainMemory(CredentialsConfigKey.of(task), task.getDefaultChainHintFile().map(Paths::get)));
+    }
+
+    static final class Source {
+        Source(final String name, final Supplier<AWSCredentialsProvider> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        /**
+         * Creates a provider of the source, and gets credentials once to check that the source has valid credentials.
+         */
+        AWSCredentialsProvider probe() {
+            final AWSCredentialsProvider provider = this.factory.get();
+            try {
+                final AWSCredentials credentials = provider.getCredentials();
+                if (credentials == null || StringUtils.isNullOrEmpty(credentials.getAWSAccessKeyId())
+                            || StringUtils.isNullOrEmpty(credentials.getAWSSecretKey())) {
+                    throw new SdkClientException("No valid credentials in " + this.name + ".");
+                }
+            } catch (final RuntimeException ex) {
+                closeQuietly(provider);
+                throw ex;
+            }
+            return provider;
+        }
+
+        private final String name;
+        private final Supplier<AWSCredentialsProvider> factory;
+    }
+
+    @Override
+    public AWSCredentials getCredentials() {
+        AWSCredentialsProvider provider = this.resolved;
+        if (provider == null) {
+            provider = this.resolve();
+        }
+        return provider.getCredentials();
+    }
+
+    @Override
+    public void refresh() {
+        final AWSCredentialsProvider provider = this.resolved;
+        if (provider != null) {
+            provider.refresh();
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(this.resolved);
+    }
+
+    /**
+     * Gets the name of the source resolved, or empty if not resolved yet.
+     */
+    Optional<String> getResolvedSource() {
+        return Optional.ofNullable(this.resolvedSource);
+    }
+
+    private synchronized AWSCredentialsProvider resolve() {
+        if (this.resolved != null) {
+            return this.resolved;
+        }
+        final List<String> failures = new ArrayList<>();
+        final Map<String, CompletableFuture<AWSCredentialsProvider>> started = this.startLastWinner();
+        try {
+            // 1. The sources in the priority order, except for those which have failed recently.
+            final List<Source> skippedLocal = new ArrayList<>();
+            final List<Source> skippedNetwork = new ArrayList<>();
+            final Optional<AWSCredentialsProvider> provider = this.probeInOrder(
+                    this.notSkipped(this.localSources, skippedLocal),
+                    this.notSkipped(this.networkSources, skippedNetwork),
+                    started,
+                    failures);
+            if (provider.isPresent()) {
+                return provider.get();
+            }
+
+            // 2. The sources which have failed recently, as a last resort.
+            return this.probeInOrder(skippedLocal, skippedNetwork, started, failures).orElseThrow(() -> new SdkClientException(
+                    "Unable to load AWS credentials from any source in the default chain: " + failures));
+        } finally {
+            this.closeUnresolved(started.values());
+        }
+    }
+
+    // Starts probing the network-backed source which has resolved credentials before, in the same configuration or in the last
+    // run, while the sources prior to it are probed. Its result is taken only when none of them has credentials.
+    private Map<String, CompletableFuture<AWSCredentialsProvider>> startLastWinner() {
+        final Map<String, CompletableFuture<AWSCredentialsProvider>> started = new HashMap<>();
+        final Optional<String> lastWinner = this.memory.getLastWinner();
+        if (!lastWinner.isPresent() || this.memory.hasFailedRecently(lastWinner.get())) {
+            return started;
+        }
+        for (final Source source : this.networkSources) {
+            if (source.getName().equals(lastWinner.get())) {
+                started.put(source.getName(), CompletableFuture.supplyAsync(source::probe, PROBE_EXECUTOR));
+            }
+        }
+        return started;
+    }
+
+    private Optional<AWSCredentialsProvider> probeInOrder(
+            final List<Source> localSources,
+            final List<Source> networkSources,
+            final Map<String, CompletableFuture<AWSCredentialsProvider>> started,
+            final List<String> failures) {
+        for (final Source source : localSources) {
+            try {
+                return Optional.of(this.resolvedBy(source, source.probe()));
+            } catch (final RuntimeException ex) {
+                this.failedBy(source, ex.getMessage(), failures);
+            }
+        }
+
+        final List<CompletableFuture<AWSCredentialsProvider>> probes = new ArrayList<>();
+        for (final Source source : networkSources) {
+            final CompletableFuture<AWSCredentialsProvider> probe = started.remove(source.getName());
+            probes.add(probe != null ? probe : CompletableFuture.supplyAsync(source::probe, PROBE_EXECUTOR));
+        }
+        final long deadlineNanos = System.nanoTime() + this.networkTimeout.toNanos();
+        try {
+            for (int i = 0; i < probes.size(); i++) {
+                final Source source = networkSources.get(i);
+                try {
+                    final AWSCredentialsProvider provider =
+                            probes.get(i).get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    return Optional.of(this.resolvedBy(source, provider));
+                } catch (final ExecutionException ex) {
+                    this.failedBy(source, ex.getCause().getMessage(), failures);
+                } catch (final TimeoutException ex) {
+                    this.failedBy(source, "timed out in " + this.networkTimeout.toMillis() + " ms", failures);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SdkClientException("Interrupted while loading AWS credentials from the default chain.", ex);
+                }
+            }
+        } finally {
+            this.closeUnresolved(probes);
+        }
+        return Optional.empty();
+    }
+
+    // Closes providers of the sources which have not won, including those which would complete after the winner.
+    private void closeUnresolved(final Collection<CompletableFuture<AWSCredentialsProvider>> probes) {
+        for (final CompletableFuture<AWSCredentialsProvider> probe : probes) {
+            probe.thenAccept(provider -> {
+                if (provider != this.resolved) {
+                    closeQuietly(provider);
+                }
+            });
+        }
+    }
+
+    private List<Source> notSkipped(final List<Source> sources, final List<Source> skipped) {
+        final List<Source> notSkipped = new ArrayList<>();
+        for (final Source source : sources) {
+            if (this.memory.hasFailedRecently(source.getName())) {
+                skipped.add(source);
+            } else {
+                notSkipped.add(source);
+            }
+        }
+        return notSkipped;
+    }
+
+    private void failedBy(final Source source, final String message, final List<String> failures) {
+        this.memory.recordFailure(source.getName());
+        failures.add(source.getName() + ": " + message);
+    }
+
+    private AWSCredentialsProvider resolvedBy(final Source source, final AWSCredentialsProvider provider) {
+        log.info("AWS credentials are resolved from '{}' in the default chain.", source.getName());
+        this.memory.recordSuccess(source.getName());
+        this.resolvedSource = source.getName();
+        this.resolved = provider;
+        return provider;
+    }
+
+    private static AWSCredentialsProvider createDefaultProfileProvider() {
+        final File file = AwsProfileFileLocationProvider.DEFAULT_CREDENTIALS_LOCATION_PROVIDER.getLocation();
+        if (file == null) {
+            throw new SdkClientException("No AWS credentials profile file is found.");
+        }
+        return ReloadingCredentialsProvider.ofProfile(file.toPath(), AwsProfileNameLoader.INSTANCE.loadProfileName());
+    }
+
+    private static AWSCredentialsProvider createWebIdentityProvider(
+            final AwsCredentialsConfig task,
+            final SecurityTokenServiceClients.Settings stsSettings,
+            final RefreshSettings refreshSettings) {
+        final String roleArn = System.getenv(WebIdentityCredentialsProvider.ROLE_ARN_ENVIRONMENT_VARIABLE);
+        final String tokenFile = System.getenv(WebIdentityCredentialsProvider.TOKEN_FILE_ENVIRONMENT_VARIABLE);
+        if (StringUtils.isNullOrEmpty(roleArn) || StringUtils.isNullOrEmpty(tokenFile)) {
+            throw new SdkClientException(WebIdentityCredentialsProvider.ROLE_ARN_ENVIRONMENT_VARIABLE + " or "
+                    + WebIdentityCredentialsProvider.TOKEN_FILE_ENVIRONMENT_VARIABLE + " is not set.");
+        }
+        final String sessionName = System.getenv(WebIdentityCredentialsProvider.ROLE_SESSION_NAME_ENVIRONMENT_VARIABLE);
+        return new WebIdentityCredentialsProvider(
+                SecurityTokenServiceClients.acquire(stsSettings),
+                roleArn,
+                StringUtils.isNullOrEmpty(sessionName) ? task.getSessionName() : sessionName,
+                Paths.get(tokenFile),
+                task.getDurationInSeconds(),
+                refreshSettings);
+    }
+
+    private static AWSCredentialsProvider createContainerProvider(
+            final MetadataHttpClient metadataClient, final RefreshSettings refreshSettings) {
+        final String endpoint = ContainerCredentialsProvider.resolveEndpoint().orElseThrow(() -> new SdkClientException(
+                "Neither " + ContainerCredentialsProvider.RELATIVE_URI_ENVIRONMENT_VARIABLE + " nor "
+                + ContainerCredentialsProvider.FULL_URI_ENVIRONMENT_VARIABLE + " is set."));
+        return new ContainerCredentialsProvider(endpoint, metadataClient, refreshSettings);
+    }
+
+    private static void closeQuietly(final AWSCredentialsProvider provider) {
+        if (provider instanceof Closeable) {
+            try {
+                ((Closeable) provider).close();
+            } catch (final IOException | RuntimeException ex) {
+                log.debug("Failed to close an AWS credentials provider.", ex);
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultCredentialsChain.class);
+
+    // Probes of network-backed sources, which mostly wait on I/O.
+    private static final ExecutorService PROBE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "embulk-aws-credentials-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Source> localSources;
+    private final List<Source> networkSources;
+    private final Duration networkTimeout;
+    private final DefaultChainMemory memory;
+
+    private volatile AWSCredentialsProvider resolved;
+    private volatile String resolvedSource;
+}
@@ -0,0 +1,34 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * A pair of {@link com.amazonaws.auth.AWSCredentials} and its expiration, if any.
+ */
+final class ExpiringCredentials {
+    ExpiringCredentials(final AWSCredentials credentials, final Optional<Instant> expiration) {
+        this.credentials = credentials;
+        this.expiration = expiration;
+    }
+
+    AWSCredentials getCredentials() {
+        return this.credentials;
+    }
+
+    Optional<Instant> getExpiration() {
+        return this.expiration;
+    }
+
+    /**
+     * Returns {@code true} if the credentials expire within {@code margin} from {@code now}.
+     */
+    boolean expiresWithin(final Duration margin, final Instant now) {
+        return this.expiration.isPresent() && !now.plus(margin).isBefore(this.expiration.get());
+    }
+
+    private final AWSCredentials credentials;
+    private final Optional<Instant> expiration;
+}
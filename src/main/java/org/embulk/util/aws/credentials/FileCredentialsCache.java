@@ -0,0 +1,187 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.util.BinaryUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file-backed cache of session credentials shared across Embulk runs, like the AWS CLI's {@code ~/.aws/cli/cache}.
+ *
+ * <p>Each entry is a JSON file named by the SHA-1 of its key, readable and writable only by its owner. Entries are replaced
+ * atomically so that concurrent Embulk processes never read a partially-written entry. The cache is best-effort. Failures
+ * to read or write entries are logged, and never fail loading credentials.
+ */
+final class FileCredentialsCache {
+    FileCredentialsCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    static String key(final String... parts) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return BinaryUtils.toHex(digest.digest(MAPPER.writeValueAsBytes(Arrays.asList(parts))));
+        } catch (final NoSuchAlgorithmException | IOException ex) {
+            throw new IllegalStateException("Failed to build a credentials cache key.", ex);
+        }
+    }
+
+    Optional<ExpiringCredentials> read(final String key) {
+        final Path file = this.directory.resolve(key + ".json");
+        final JsonNode root;
+        try (final InputStream input = Files.newInputStream(file)) {
+            root = MAPPER.readTree(input);
+        } catch (final NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (final IOException ex) {
+            log.warn("Failed to read the credentials cache file: {}", file, ex);
+            return Optional.empty();
+        }
+        final JsonNode credentials = root == null ? MAPPER.createObjectNode() : root.path("Credentials");
+        if (!credentials.hasNonNull("AccessKeyId") || !credentials.hasNonNull("SecretAccessKey")
+                    || !credentials.hasNonNull("SessionToken") || !credentials.hasNonNull("Expiration")) {
+            log.warn("Ignored the broken credentials cache file: {}", file);
+            return Optional.empty();
+        }
+        final Instant expiration;
+        try {
+            expiration = Instant.parse(credentials.get("Expiration").asText());
+        } catch (final RuntimeException ex) {
+            log.warn("Ignored the broken credentials cache file: {}", file, ex);
+            return Optional.empty();
+        }
+        return Optional.of(new ExpiringCredentials(
+                new BasicSessionCredentials(
+                        credentials.get("AccessKeyId").asText(),
+                        credentials.get("SecretAccessKey").asText(),
+                        credentials.get("SessionToken").asText()),
+                Optional.of(expiration)));
+    }
+
+    void write(final String key, final ExpiringCredentials expiring) {
+        final AWSSessionCredentials credentials = (AWSSessionCredentials) expiring.getCredentials();
+        final ObjectNode root = MAPPER.createObjectNode();
+        final ObjectNode node = root.putObject("Credentials");
+        node.put("AccessKeyId", credentials.getAWSAccessKeyId());
+        node.put("SecretAccessKey", credentials.getAWSSecretKey());
+        node.put("SessionToken", credentials.getSessionToken());
+        node.put("Expiration", expiring.getExpiration().get().toString());
+
+        Path temporary = null;
+        try {
+            createDirectory(this.directory);
+            temporary = createOwnerOnlyFile(this.directory, key);
+            Files.write(temporary, MAPPER.writeValueAsString(root).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, this.directory.resolve(key + ".json"),
+                       StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException ex) {
+            log.warn("Failed to write the credentials cache file in: {}", this.directory, ex);
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (final IOException ignored) {
+                    // Nothing to do any more.
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs {@code action} holding an exclusive lock of the entry, among threads in the process and among processes on the host.
+     *
+     * <p>The lock is best-effort like the cache. If the lock file cannot be locked, {@code action} runs without the lock.
+     */
+    <T> T withLock(final String key, final Supplier<T> action) {
+        final Path lockFile = this.directory.resolve(key + ".lock").toAbsolutePath();
+        // A file lock is held per process. Threads in the process are serialized before locking the file.
+        final ReentrantLock localLock = LOCAL_LOCKS.computeIfAbsent(lockFile, path -> new ReentrantLock());
+        localLock.lock();
+        try {
+            FileChannel channel = null;
+            try {
+                createDirectory(this.directory);
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                channel.lock();
+            } catch (final IOException ex) {
+                log.warn("Failed to lock the credentials cache file: {}", lockFile, ex);
+            }
+            try {
+                return action.get();
+            } finally {
+                if (channel != null) {
+                    try {
+                        channel.close();  // Releases the lock.
+                    } catch (final IOException ex) {
+                        log.warn("Failed to unlock the credentials cache file: {}", lockFile, ex);
+                    }
+                }
+            }
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileCredentialsCache(" + this.directory + ")";
+    }
+
+    private static void createDirectory(final Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            if (isPosix(directory.getFileSystem().supportedFileAttributeViews())) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        } catch (final FileAlreadyExistsException ex) {
+            // Another process has created it in the meantime.
+        }
+    }
+
+    private static Path createOwnerOnlyFile(final Path directory, final String key) throws IOException {
+        if (isPosix(directory.getFileSystem().supportedFileAttributeViews())) {
+            return Files.createTempFile(directory, key, ".tmp", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        return Files.createTempFile(directory, key, ".tmp");
+    }
+
+    private static boolean isPosix(final Set<String> views) {
+        return views.contains("posix");
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FileCredentialsCache.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Locks of lock files by path, shared among caches in the process.
+    private static final ConcurrentHashMap<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+}
@@ -0,0 +1,55 @@
+package org.embulk.util.aws.credentials;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A cheap change stamp of a file by its modified time and size, to detect changes without reading the file.
+ */
+final class FileStamp {
+    private FileStamp(final long modifiedMillis, final long size) {
+        this.modifiedMillis = modifiedMillis;
+        this.size = size;
+    }
+
+    /**
+     * Gets the stamp of the file. Files which do not exist, or cannot be accessed, all have the same stamp.
+     */
+    static FileStamp of(final Path path) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (final IOException ex) {
+            return MISSING;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object otherObject) {
+        if (this == otherObject) {
+            return true;
+        }
+        if (!(otherObject instanceof FileStamp)) {
+            return false;
+        }
+        final FileStamp other = (FileStamp) otherObject;
+        return this.modifiedMillis == other.modifiedMillis && this.size == other.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.modifiedMillis) * 31 + Long.hashCode(this.size);
+    }
+
+    @Override
+    public String toString() {
+        return "FileStamp(modified=" + this.modifiedMillis + ", size=" + this.size + ")";
+    }
+
+    private static final FileStamp MISSING = new FileStamp(-1L, -1L);
+
+    private final long modifiedMillis;
+    private final long size;
+}
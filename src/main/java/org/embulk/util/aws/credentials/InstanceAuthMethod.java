@@ -0,0 +1,27 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@code auth_method: instance}, with the EC2 instance metadata service.
+ */
+final class InstanceAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        return new InstanceMetadataCredentialsProvider(
+                InstanceMetadataCredentialsProvider.resolveEndpoint(task.getInstanceMetadataEndpoint()),
+                MetadataHttpClient.of(task, prefix),
+                refreshSettings);
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.INSTANCE_METADATA_ENDPOINT));
+}
@@ -0,0 +1,158 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} for the instance profile in the EC2 instance metadata service (IMDS),
+ * refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>It talks IMDSv2. A session token is cached process-wide per endpoint for its TTL, and shared among providers. It falls
+ * back to IMDSv1 only when the endpoint does not support IMDSv2 tokens at all.
+ */
+final class InstanceMetadataCredentialsProvider extends RefreshableCredentialsProvider {
+    InstanceMetadataCredentialsProvider(final String endpoint, final MetadataHttpClient client, final RefreshSettings settings) {
+        super("EC2 instance metadata " + endpoint, settings);
+        this.endpoint = endpoint;
+        this.client = client;
+    }
+
+    /**
+     * Resolves the IMDS endpoint from the configured one, {@code AWS_EC2_METADATA_SERVICE_ENDPOINT}, or the default.
+     */
+    static String resolveEndpoint(final Optional<String> configured) {
+        String endpoint = configured.orElse(null);
+        if (endpoint == null) {
+            endpoint = System.getenv(ENDPOINT_ENVIRONMENT_VARIABLE);
+        }
+        if (endpoint == null || endpoint.isEmpty()) {
+            endpoint = DEFAULT_ENDPOINT;
+        }
+        while (endpoint.endsWith("/")) {
+            endpoint = endpoint.substring(0, endpoint.length() - 1);
+        }
+        return endpoint;
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        final String roleName = firstLine(this.getMetadata(SECURITY_CREDENTIALS_PATH));
+        if (roleName.isEmpty()) {
+            throw new SdkClientException("No instance profile is attached to the EC2 instance.");
+        }
+        final JsonNode credentials;
+        try {
+            credentials = MAPPER.readTree(this.getMetadata(SECURITY_CREDENTIALS_PATH + roleName));
+        } catch (final IOException ex) {
+            throw new SdkClientException("Unable to parse credentials from Amazon EC2 metadata service.", ex);
+        }
+        if (credentials == null || !"Success".equals(credentials.path("Code").asText("Success"))) {
+            throw new SdkClientException("Unable to load credentials from Amazon EC2 metadata service: "
+                    + (credentials == null ? "(empty)" : credentials.path("Code").asText() + ": " + credentials.path("Message").asText()));
+        }
+        final Optional<Instant> expiration;
+        if (credentials.hasNonNull("Expiration")) {
+            expiration = Optional.of(Instant.parse(credentials.get("Expiration").asText()));
+        } else {
+            expiration = Optional.empty();
+        }
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(
+                        credentials.path("AccessKeyId").asText(),
+                        credentials.path("SecretAccessKey").asText(),
+                        credentials.path("Token").asText()),
+                expiration);
+    }
+
+    private String getMetadata(final String path) {
+        Optional<String> token = this.getToken(false);
+        MetadataHttpClient.Response response = this.client.get(this.endpoint + path, tokenHeader(token));
+        if (response.getStatus() == 401 && token.isPresent()) {
+            // The token has been invalidated before its TTL, for example, by a restart of the instance.
+            token = this.getToken(true);
+            response = this.client.get(this.endpoint + path, tokenHeader(token));
+        }
+        if (!response.isSuccessful()) {
+            throw new SdkClientException("Unable to load " + path + " from Amazon EC2 metadata service: HTTP " + response.getStatus());
+        }
+        return response.getBody();
+    }
+
+    private Optional<String> getToken(final boolean renew) {
+        final Instant now = Instant.now();
+        final SessionToken cached = TOKENS.get(this.endpoint);
+        if (!renew && cached != null && cached.expiresAt.isAfter(now.plus(TOKEN_RENEW_MARGIN))) {
+            return cached.value;
+        }
+        final MetadataHttpClient.Response response = this.client.put(
+                this.endpoint + TOKEN_PATH,
+                Collections.singletonMap(TOKEN_TTL_HEADER, Long.toString(TOKEN_TTL.getSeconds())));
+        final SessionToken renewed;
+        if (response.isSuccessful()) {
+            renewed = new SessionToken(Optional.of(response.getBody().trim()), now.plus(TOKEN_TTL));
+        } else if (response.getStatus() == 404 || response.getStatus() == 405) {
+            log.debug("IMDSv2 is unavailable at {}. Falling back to IMDSv1.", this.endpoint);
+            renewed = new SessionToken(Optional.empty(), now.plus(TOKEN_TTL));
+        } else {
+            throw new SdkClientException("Unable to get an IMDSv2 session token from Amazon EC2 metadata service: HTTP " + response.getStatus());
+        }
+        TOKENS.put(this.endpoint, renewed);
+        return renewed.value;
+    }
+
+    private static Map<String, String> tokenHeader(final Optional<String> token) {
+        if (token.isPresent()) {
+            return Collections.singletonMap(TOKEN_HEADER, token.get());
+        }
+        return Collections.emptyMap();
+    }
+
+    private static String firstLine(final String body) {
+        final String trimmed = body.trim();
+        final int newline = trimmed.indexOf('\n');
+        return newline < 0 ? trimmed : trimmed.substring(0, newline).trim();
+    }
+
+    private static final class SessionToken {
+        SessionToken(final Optional<String> value, final Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        // Empty for IMDSv1.
+        private final Optional<String> value;
+        private final Instant expiresAt;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceMetadataCredentialsProvider.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String DEFAULT_ENDPOINT = "http://169.254.169.254";
+    private static final String ENDPOINT_ENVIRONMENT_VARIABLE = "AWS_EC2_METADATA_SERVICE_ENDPOINT";
+
+    private static final String TOKEN_PATH = "/latest/api/token";
+    private static final String TOKEN_HEADER = "X-aws-ec2-metadata-token";
+    private static final String TOKEN_TTL_HEADER = "X-aws-ec2-metadata-token-ttl-seconds";
+    private static final Duration TOKEN_TTL = Duration.ofHours(6);
+    private static final Duration TOKEN_RENEW_MARGIN = Duration.ofMinutes(1);
+
+    private static final String SECURITY_CREDENTIALS_PATH = "/latest/meta-data/iam/security-credentials/";
+
+    // IMDSv2 session tokens per endpoint, shared among providers in the process.
+    private static final ConcurrentHashMap<String, SessionToken> TOKENS = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+    private final MetadataHttpClient client;
+}
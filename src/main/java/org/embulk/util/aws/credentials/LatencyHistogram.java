@@ -0,0 +1,74 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in fixed buckets from 1 ms to 30 seconds.
+ *
+ * <p>Percentiles are estimated as the upper bounds of their buckets, but never above the maximum recorded.
+ */
+final class LatencyHistogram {
+    LatencyHistogram() {
+        this.buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+        this.maxMillis = new LongAccumulator(Math::max, 0L);
+    }
+
+    void record(final Duration latency) {
+        final long millis = latency.toMillis();
+        int bucket = 0;
+        while (bucket < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        this.buckets[bucket].increment();
+        this.maxMillis.accumulate(millis);
+    }
+
+    long getCount() {
+        long count = 0;
+        for (final LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the latency at the percentile, such as {@code 99.0} for p99, or zero if nothing is recorded.
+     */
+    Duration getPercentile(final double percentile) {
+        final long[] counts = new long[this.buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        final long max = this.maxMillis.get();
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Duration.ofMillis(Math.min(BOUNDS_MILLIS[i], max));
+            }
+        }
+        return Duration.ofMillis(max);
+    }
+
+    Duration getMax() {
+        return Duration.ofMillis(this.maxMillis.get());
+    }
+
+    private static final long[] BOUNDS_MILLIS = {
+        1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1_000L, 2_000L, 5_000L, 10_000L, 30_000L,
+    };
+
+    private final LongAdder[] buckets;
+    private final LongAccumulator maxMillis;
+}
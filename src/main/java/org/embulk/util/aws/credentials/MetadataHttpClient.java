@@ -0,0 +1,141 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.embulk.config.ConfigException;
+
+/**
+ * A tiny HTTP client for local credential endpoints, such as the EC2 instance metadata service, with tight timeouts.
+ *
+ * <p>It retries on I/O errors and on server errors ({@code 5xx}), but not on client errors ({@code 4xx}), which are returned
+ * to callers as they are. It never goes through HTTP proxies configured in the JVM, since the endpoints are link-local or
+ * local, and the credentials must not pass through proxies.
+ */
+final class MetadataHttpClient {
+    MetadataHttpClient(final int connectTimeoutMillis, final int readTimeoutMillis, final int maxRetries) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    static MetadataHttpClient of(final AwsCredentialsConfig task, final String prefix) {
+        if (task.getMetadataConnectTimeoutMillis() <= 0) {
+            throw new ConfigException("'" + prefix + "metadata_connect_timeout_millis' must be positive.");
+        }
+        if (task.getMetadataReadTimeoutMillis() <= 0) {
+            throw new ConfigException("'" + prefix + "metadata_read_timeout_millis' must be positive.");
+        }
+        if (task.getMetadataMaxRetries() < 0) {
+            throw new ConfigException("'" + prefix + "metadata_max_retries' must not be negative.");
+        }
+        return new MetadataHttpClient(task.getMetadataConnectTimeoutMillis(), task.getMetadataReadTimeoutMillis(), task.getMetadataMaxRetries());
+    }
+
+    static final class Response {
+        private Response(final int status, final String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        int getStatus() {
+            return this.status;
+        }
+
+        String getBody() {
+            return this.body;
+        }
+
+        boolean isSuccessful() {
+            return 200 <= this.status && this.status < 300;
+        }
+
+        private final int status;
+        private final String body;
+    }
+
+    Response get(final String url, final Map<String, String> headers) {
+        return this.request("GET", url, headers);
+    }
+
+    Response put(final String url, final Map<String, String> headers) {
+        return this.request("PUT", url, headers);
+    }
+
+    private Response request(final String method, final String url, final Map<String, String> headers) {
+        IOException lastException = null;
+        Response lastResponse = null;
+        for (int attempt = 0; attempt <= this.maxRetries; attempt++) {
+            if (attempt > 0) {
+                sleepBeforeRetry(attempt);
+            }
+            try {
+                lastResponse = this.requestOnce(method, url, headers);
+                if (lastResponse.getStatus() < 500) {
+                    return lastResponse;
+                }
+            } catch (final IOException ex) {
+                lastException = ex;
+            }
+        }
+        if (lastResponse != null) {
+            return lastResponse;
+        }
+        throw new SdkClientException("Failed to connect to " + url + " after " + (this.maxRetries + 1) + " attempt(s).", lastException);
+    }
+
+    private Response requestOnce(final String method, final String url, final Map<String, String> headers) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection(Proxy.NO_PROXY);
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(this.connectTimeoutMillis);
+            connection.setReadTimeout(this.readTimeoutMillis);
+            connection.setUseCaches(false);
+            connection.setInstanceFollowRedirects(false);
+            for (final Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            final int status = connection.getResponseCode();
+            final InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            return new Response(status, readFully(stream));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String readFully(final InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        try (final InputStream input = stream) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void sleepBeforeRetry(final int attempt) {
+        try {
+            Thread.sleep(RETRY_BASE_DELAY_MILLIS << Math.min(attempt - 1, 6));
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SdkClientException("Interrupted while retrying a request.", ex);
+        }
+    }
+
+    private static final long RETRY_BASE_DELAY_MILLIS = 50L;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxRetries;
+}
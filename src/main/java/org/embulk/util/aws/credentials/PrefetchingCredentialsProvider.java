@@ -0,0 +1,69 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AsyncRefreshingAwsCredentialsProvider} over a provider created with {@code refresh_mode: async} and
+ * {@code stale_while_revalidate: true}, of any {@code auth_method}.
+ */
+final class PrefetchingCredentialsProvider implements AsyncRefreshingAwsCredentialsProvider {
+    PrefetchingCredentialsProvider(final AWSCredentialsProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public AWSCredentials getCredentials() {
+        return this.provider.getCredentials();
+    }
+
+    @Override
+    public void refresh() {
+        this.provider.refresh();
+    }
+
+    @Override
+    public void prefetch() {
+        if (!this.prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        // Requests during the prefetch wait for it in the provider, such as for the refresh in flight, or the default chain
+        // being resolved, rather than loading the credentials again. It runs among background refreshes, a few at a time.
+        RefreshScheduler.shared().schedule(this.provider, PrefetchingCredentialsProvider::load, Duration.ZERO);
+    }
+
+    @Override
+    public void close() {
+        if (this.provider instanceof Closeable) {
+            try {
+                ((Closeable) this.provider).close();
+            } catch (final IOException ex) {
+                log.warn("Failed to close an AWS credentials provider.", ex);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchingCredentialsProvider(" + this.provider + ")";
+    }
+
+    private static void load(final AWSCredentialsProvider provider) {
+        try {
+            provider.getCredentials();
+        } catch (final RuntimeException ex) {
+            log.warn("Failed to prefetch credentials of {}. They are loaded on the next request.", provider, ex);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingCredentialsProvider.class);
+
+    private final AWSCredentialsProvider provider;
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+}
@@ -0,0 +1,161 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} which runs an external command, as {@code credential_process} in
+ * AWS config files, and parses credentials from its output, refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>Credentials are cached process-wide per command in {@link SharedCredentialsCache}. Therefore, at most one process runs
+ * at a time per command, however many tasks need credentials. A process is killed if it does not finish within a timeout.
+ *
+ * @see <a href="https://docs.aws.amazon.com/cli/latest/userguide/cli-configure-sourcing-external.html">Sourcing credentials with an external process</a>
+ */
+final class ProcessCredentialsProvider extends RefreshableCredentialsProvider {
+    ProcessCredentialsProvider(final String command, final Duration timeout, final RefreshSettings settings) {
+        super("credential process", settings);
+        this.command = command;
+        this.timeout = timeout;
+
+        // Shared credentials must outlive the refresh window. Otherwise, the process would be run again right away.
+        this.sharedMinRemaining = settings.getRefreshAhead()
+                .plus(settings.getRefreshJitter())
+                .plus(BLOCKING_REFRESH_MARGIN);
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        return SharedCredentialsCache.get("credential_process:" + this.command, this.sharedMinRemaining, this::run);
+    }
+
+    private ExpiringCredentials run() {
+        final Process process;
+        try {
+            process = new ProcessBuilder(shellCommand(this.command))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (final IOException ex) {
+            throw new SdkClientException("Failed to start the credential process.", ex);
+        }
+        try {
+            process.getOutputStream().close();
+
+            // The output is read in another thread so that a process which never closes its output is killed in time.
+            final CompletableFuture<String> output = CompletableFuture.supplyAsync(() -> readOutput(process.getInputStream()), READER_EXECUTOR);
+            final long deadlineNanos = System.nanoTime() + this.timeout.toNanos();
+            if (!process.waitFor(this.timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new SdkClientException("The credential process did not finish in " + this.timeout.toMillis() + " ms.");
+            }
+            // The output is taken before the exit code, since a process whose output is cut at the limit fails on a broken pipe.
+            final String result = output.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (process.exitValue() != 0) {
+                throw new SdkClientException("The credential process exited with " + process.exitValue() + ".");
+            }
+            return parse(result);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SdkClientException("Interrupted while running the credential process.", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof SdkClientException) {
+                throw (SdkClientException) ex.getCause();
+            }
+            throw new SdkClientException("Failed to read the output of the credential process.", ex.getCause());
+        } catch (final TimeoutException ex) {
+            throw new SdkClientException("The credential process did not close its output in " + this.timeout.toMillis() + " ms.", ex);
+        } catch (final IOException ex) {
+            throw new SdkClientException("Failed to run the credential process.", ex);
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private static ExpiringCredentials parse(final String output) {
+        final JsonNode json;
+        try {
+            json = MAPPER.readTree(output);
+        } catch (final IOException ex) {
+            // The output is not included in the message because it may contain secrets.
+            throw new SdkClientException("Unable to parse the output of the credential process as JSON.");
+        }
+        if (json == null || json.path("Version").asInt(0) != 1) {
+            throw new SdkClientException("Unsupported Version in the output of the credential process. Only 1 is supported.");
+        }
+        if (!json.hasNonNull("AccessKeyId") || !json.hasNonNull("SecretAccessKey")) {
+            throw new SdkClientException("No AccessKeyId or SecretAccessKey in the output of the credential process.");
+        }
+        final AWSCredentials credentials;
+        if (json.hasNonNull("SessionToken")) {
+            credentials = new BasicSessionCredentials(
+                    json.get("AccessKeyId").asText(), json.get("SecretAccessKey").asText(), json.get("SessionToken").asText());
+        } else {
+            credentials = new BasicAWSCredentials(json.get("AccessKeyId").asText(), json.get("SecretAccessKey").asText());
+        }
+        final Optional<Instant> expiration;
+        if (json.hasNonNull("Expiration")) {
+            expiration = Optional.of(Instant.parse(json.get("Expiration").asText()));
+        } else {
+            expiration = Optional.empty();
+        }
+        return new ExpiringCredentials(credentials, expiration);
+    }
+
+    private static String readOutput(final InputStream stream) {
+        try (final InputStream input = stream) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                if (output.size() + read > MAX_OUTPUT_BYTES) {
+                    throw new SdkClientException("The output of the credential process exceeds " + MAX_OUTPUT_BYTES + " bytes.");
+                }
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<String> shellCommand(final String command) {
+        if (System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH).startsWith("windows")) {
+            return Arrays.asList("cmd.exe", "/C", command);
+        }
+        return Arrays.asList("sh", "-c", command);
+    }
+
+    private static final int MAX_OUTPUT_BYTES = 64 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ExecutorService READER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "embulk-aws-credentials-process");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String command;
+    private final Duration timeout;
+    private final Duration sharedMinRemaining;
+}
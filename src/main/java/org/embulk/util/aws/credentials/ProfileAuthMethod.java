@@ -0,0 +1,41 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.profile.path.AwsProfileFileLocationProvider;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import org.embulk.config.ConfigException;
+
+/**
+ * {@code auth_method: profile}, with {@code profile_file} and {@code profile_name}.
+ */
+final class ProfileAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String profileName = task.getProfileName().orElse("default");
+        final Path profileFilePath;
+        if (task.getProfileFile().isPresent()) {
+            profileFilePath = Paths.get(task.getProfileFile().get());
+        } else {
+            final File defaultFile = AwsProfileFileLocationProvider.DEFAULT_CREDENTIALS_LOCATION_PROVIDER.getLocation();
+            if (defaultFile == null) {
+                throw new ConfigException("Unable to find the AWS credentials profile file. Set '" + prefix + "profile_file'.");
+            }
+            profileFilePath = defaultFile.toPath();
+        }
+
+        return ReloadingCredentialsProvider.ofProfile(profileFilePath, profileName);
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.PROFILE_FILE, AuthOption.PROFILE_NAME));
+}
@@ -0,0 +1,68 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.profile.ProfilesConfigFile;
+import com.amazonaws.auth.profile.internal.BasicProfile;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide cache of parsed AWS profile files, keyed by their paths, modified times, and sizes.
+ *
+ * <p>A profile file is parsed only once until it is modified, however many tasks look up profiles in it. Looking up
+ * a profile costs just a {@code stat} of the file after the first parse.
+ */
+final class ProfileFileCache {
+    private ProfileFileCache() {
+        // No instantiation.
+    }
+
+    static AWSCredentials getCredentials(final Path path, final String profileName) {
+        return get(path).getCredentials(profileName);
+    }
+
+    /**
+     * Gets a property of a profile, which is named {@code profileName} as in AWS credentials files, or {@code "profile "}
+     * followed by {@code profileName} as in AWS config files.
+     */
+    static Optional<String> getProperty(final Path path, final String profileName, final String property) {
+        final ProfilesConfigFile parsed = get(path);
+        BasicProfile profile = parsed.getAllBasicProfiles().get(profileName);
+        if (profile == null) {
+            profile = parsed.getAllBasicProfiles().get("profile " + profileName);
+        }
+        if (profile == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(profile.getPropertyValue(property));
+    }
+
+    static ProfilesConfigFile get(final Path path) {
+        final Path normalized = path.toAbsolutePath().normalize();
+        final FileStamp stamp = FileStamp.of(normalized);
+        final Entry cached = ENTRIES.get(normalized);
+        if (cached != null && cached.stamp.equals(stamp)) {
+            return cached.parsed;
+        }
+        // compute() parses the file only once even when many tasks find it modified at the same time.
+        return ENTRIES.compute(normalized, (key, existing) -> {
+            if (existing != null && existing.stamp.equals(stamp)) {
+                return existing;
+            }
+            return new Entry(stamp, new ProfilesConfigFile(key.toFile()));
+        }).parsed;
+    }
+
+    private static final class Entry {
+        Entry(final FileStamp stamp, final ProfilesConfigFile parsed) {
+            this.stamp = stamp;
+            this.parsed = parsed;
+        }
+
+        private final FileStamp stamp;
+        private final ProfilesConfigFile parsed;
+    }
+
+    private static final ConcurrentHashMap<Path, Entry> ENTRIES = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,57 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} in a worker which starts with credentials propagated from the coordinator.
+ *
+ * <p>It makes no network call while the propagated credentials are valid. When a job outlives them, it resolves credentials
+ * by itself with the configured authentication method, as if nothing were propagated.
+ */
+final class PropagatedCredentialsProvider extends RefreshableCredentialsProvider {
+    PropagatedCredentialsProvider(
+            final AwsPropagatedCredentials propagated,
+            final Supplier<AWSCredentialsProvider> localProviderFactory,
+            final RefreshSettings settings) {
+        super("propagated from the coordinator", settings);
+        this.localProviderFactory = localProviderFactory;
+        this.localProvider = null;
+        this.initialize(propagated.toExpiringCredentials());
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        if (this.localProvider == null) {
+            log.info("Propagated AWS credentials are expiring. Resolving AWS credentials in this worker.");
+            this.localProvider = this.localProviderFactory.get();
+        }
+        if (this.localProvider instanceof RefreshableCredentialsProvider) {
+            return ((RefreshableCredentialsProvider) this.localProvider).getExpiringCredentials();
+        }
+        return new ExpiringCredentials(this.localProvider.getCredentials(), Optional.empty());
+    }
+
+    @Override
+    void closeSource() {
+        if (this.localProvider instanceof Closeable) {
+            try {
+                ((Closeable) this.localProvider).close();
+            } catch (final IOException ex) {
+                log.warn("Failed to close an AWS credentials provider.", ex);
+            }
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PropagatedCredentialsProvider.class);
+
+    private final Supplier<AWSCredentialsProvider> localProviderFactory;
+
+    // Accessed only in load() and closeSource(), which never run concurrently with each other in practice.
+    private volatile AWSCredentialsProvider localProvider;
+}
@@ -0,0 +1,20 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * {@code auth_method: properties}.
+ */
+final class PropertiesAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        return ReloadingCredentialsProvider.ofSystemProperties();
+    }
+}
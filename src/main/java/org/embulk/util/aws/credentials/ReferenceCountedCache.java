@@ -0,0 +1,113 @@
+package org.embulk.util.aws.credentials;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide cache which shares one value per key among its users, and disposes the value when the last user releases it.
+ *
+ * <p>A value is created out of the lock of the cache so that a slow creation, such as a request to instance metadata, blocks
+ * only the users of the same key. They wait for the one creation instead of creating the value again.
+ */
+final class ReferenceCountedCache<K, V> {
+    ReferenceCountedCache(final Consumer<V> disposer) {
+        this.disposer = disposer;
+        this.entries = new HashMap<>();
+    }
+
+    /**
+     * Gets the value for the key, creating it by the factory if nobody holds it yet, and increments its reference count.
+     *
+     * <p>If the factory fails, the failure is thrown to every user waiting for the value, and the next call creates it again.
+     */
+    V acquire(final K key, final Supplier<V> factory) {
+        final Entry<V> entry;
+        final boolean creating;
+        synchronized (this) {
+            final Entry<V> existing = this.entries.get(key);
+            if (existing == null) {
+                entry = new Entry<>();
+                this.entries.put(key, entry);
+                creating = true;
+            } else {
+                entry = existing;
+                creating = false;
+            }
+            entry.references++;
+        }
+
+        if (!creating) {
+            return join(entry.value);
+        }
+        final V created;
+        try {
+            created = factory.get();
+        } catch (final RuntimeException | Error ex) {
+            synchronized (this) {
+                this.entries.remove(key, entry);
+            }
+            entry.value.completeExceptionally(ex);
+            throw ex;
+        }
+        entry.value.complete(created);
+        return created;
+    }
+
+    /**
+     * Decrements the reference count of the key, and disposes its value when it reaches zero.
+     */
+    void release(final K key) {
+        final Entry<V> disposed;
+        synchronized (this) {
+            final Entry<V> entry = this.entries.get(key);
+            if (entry == null) {
+                return;
+            }
+            entry.references--;
+            if (entry.references > 0) {
+                return;
+            }
+            this.entries.remove(key);
+            disposed = entry;
+        }
+        // Disposing out of the lock not to block other keys on a slow close. The value is created as it has been acquired.
+        this.disposer.accept(disposed.value.join());
+    }
+
+    synchronized int getReferenceCount(final K key) {
+        final Entry<V> entry = this.entries.get(key);
+        return entry == null ? 0 : entry.references;
+    }
+
+    private static <V> V join(final CompletableFuture<V> value) {
+        try {
+            return value.join();
+        } catch (final CompletionException ex) {
+            // Rethrows the failure of the factory as is, as the user which has created the value does.
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static final class Entry<V> {
+        Entry() {
+            this.value = new CompletableFuture<>();
+            this.references = 0;
+        }
+
+        private final CompletableFuture<V> value;
+        private int references;
+    }
+
+    private final Consumer<V> disposer;
+    private final Map<K, Entry<V>> entries;
+}
@@ -0,0 +1,116 @@
+package org.embulk.util.aws.credentials;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A process-wide scheduler of background refreshes of all {@link RefreshableCredentialsProvider} in {@code async} mode.
+ *
+ * <p>A single daemon thread waits on a priority queue of refreshes ordered by their times. When a refresh is due, it is handed
+ * over to a pool of at most {@link #MAX_CONCURRENT_REFRESHES} daemon threads. Refreshes of many providers due at the same time
+ * then run a few at a time, instead of each provider having its own thread and all of them calling STS or the EC2 instance
+ * metadata service at once.
+ *
+ * <p>Providers are held only weakly. A provider which its user has dropped without closing it stops refreshing when it is
+ * garbage-collected, and its pending refresh is removed from the queue.
+ */
+final class RefreshScheduler {
+    RefreshScheduler(final String threadName) {
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads(threadName + "-scheduler"));
+        // Cancelled refreshes of closed providers must not stay in the queue until their times.
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.workers = new ThreadPoolExecutor(
+                MAX_CONCURRENT_REFRESHES,
+                MAX_CONCURRENT_REFRESHES,
+                WORKER_KEEP_ALIVE.toMillis(),
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                daemonThreads(threadName));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.collected = new ReferenceQueue<>();
+    }
+
+    static RefreshScheduler shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Schedules {@code refresh} of {@code target} to run after {@code delay}. The returned future cancels it if it has not
+     * started yet.
+     *
+     * <p>The scheduler refers to {@code target} only weakly, and {@code refresh} must not refer to it. When {@code target}
+     * is garbage-collected, such as a provider which its user has dropped without closing it, its refresh does not run, and
+     * is removed from the queue on the next call of this method.
+     */
+    <T> ScheduledFuture<?> schedule(final T target, final Consumer<? super T> refresh, final Duration delay) {
+        this.expungeCollected();
+        final Refresh<T> task = new Refresh<>(target, refresh, this.collected);
+        task.future = this.timer.schedule(() -> this.workers.execute(task), Math.max(0L, delay.toMillis()), TimeUnit.MILLISECONDS);
+        return task.future;
+    }
+
+    void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = this.collected.poll()) != null) {
+            final ScheduledFuture<?> future = ((Refresh<?>) reference).future;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    int getPendingCount() {
+        return this.timer.getQueue().size();
+    }
+
+    static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Refresh<T> extends WeakReference<T> implements Runnable {
+        private Refresh(final T target, final Consumer<? super T> refresh, final ReferenceQueue<? super T> collected) {
+            super(target, collected);
+            this.refresh = refresh;
+        }
+
+        @Override
+        public void run() {
+            final T target = this.get();
+            if (target != null) {
+                this.refresh.accept(target);
+            }
+        }
+
+        private final Consumer<? super T> refresh;
+
+        private volatile ScheduledFuture<?> future;
+    }
+
+    // Initialized on the first use so that processes without async refreshes never start the threads.
+    private static final class Holder {
+        private static final RefreshScheduler INSTANCE = new RefreshScheduler("embulk-aws-credentials-refresh");
+    }
+
+    static final int MAX_CONCURRENT_REFRESHES = 4;
+
+    private static final Duration WORKER_KEEP_ALIVE = Duration.ofSeconds(60);
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor workers;
+    private final ReferenceQueue<Object> collected;
+}
@@ -0,0 +1,84 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import org.embulk.config.ConfigException;
+
+/**
+ * How {@link RefreshableCredentialsProvider} refreshes its credentials, configured from {@link AwsCredentialsConfig}.
+ */
+final class RefreshSettings {
+    private RefreshSettings(
+            final boolean async, final Duration refreshAhead, final Duration refreshJitter, final boolean staleWhileRevalidate) {
+        this.async = async;
+        this.refreshAhead = refreshAhead;
+        this.refreshJitter = refreshJitter;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    static RefreshSettings of(final AwsCredentialsConfig task, final String prefix) {
+        final boolean async;
+        switch (task.getRefreshMode()) {
+        case "sync":
+            async = false;
+            break;
+        case "async":
+            async = true;
+            break;
+        default:
+            throw new ConfigException(String.format("Unknown %srefresh_mode '%s'. Supported modes are sync and async.",
+                        prefix, task.getRefreshMode()));
+        }
+        if (task.getRefreshAheadSeconds() < 0) {
+            throw new ConfigException("'" + prefix + "refresh_ahead_seconds' must not be negative.");
+        }
+        if (task.getRefreshJitterSeconds() < 0) {
+            throw new ConfigException("'" + prefix + "refresh_jitter_seconds' must not be negative.");
+        }
+        return new RefreshSettings(
+                async,
+                Duration.ofSeconds(task.getRefreshAheadSeconds()),
+                Duration.ofSeconds(task.getRefreshJitterSeconds()),
+                task.getStaleWhileRevalidate());
+    }
+
+    /**
+     * Returns the settings with {@code refresh_mode} overridden, for callers which decide how to refresh by themselves.
+     */
+    RefreshSettings withAsync(final boolean async) {
+        return new RefreshSettings(async, this.refreshAhead, this.refreshJitter, this.staleWhileRevalidate);
+    }
+
+    /**
+     * Returns the settings with {@code stale_while_revalidate} overridden.
+     */
+    RefreshSettings withStaleWhileRevalidate(final boolean staleWhileRevalidate) {
+        return new RefreshSettings(this.async, this.refreshAhead, this.refreshJitter, staleWhileRevalidate);
+    }
+
+    /**
+     * Returns {@code true} if credentials are refreshed in background, or {@code false} if in a requesting thread.
+     */
+    boolean isAsync() {
+        return this.async;
+    }
+
+    Duration getRefreshAhead() {
+        return this.refreshAhead;
+    }
+
+    Duration getRefreshJitter() {
+        return this.refreshJitter;
+    }
+
+    /**
+     * Returns {@code true} if still-valid credentials are served when refreshing them fails.
+     */
+    boolean isStaleWhileRevalidate() {
+        return this.staleWhileRevalidate;
+    }
+
+    private final boolean async;
+    private final Duration refreshAhead;
+    private final Duration refreshJitter;
+    private final boolean staleWhileRevalidate;
+}
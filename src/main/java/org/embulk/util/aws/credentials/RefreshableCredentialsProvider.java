@@ -0,0 +1,268 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A base of {@link com.amazonaws.auth.AWSCredentialsProvider} for expiring credentials.
+ *
+ * <p>Reading credentials is a single volatile read of the latest snapshot without any lock. At most one refresh is in flight
+ * per provider. Threads which need new credentials at the same time wait for, and share the result of, the refresh in flight.
+ *
+ * <ul>
+ * <li>When the credentials expire within {@link #BLOCKING_REFRESH_MARGIN}, or have not been loaded yet, requesting threads
+ *     wait for a refresh.
+ * <li>In {@code sync} mode, when the credentials expire within {@code refresh_ahead_seconds}, the first requesting thread
+ *     refreshes them while the other threads keep using the current credentials.
+ * <li>In {@code async} mode, {@link RefreshScheduler} refreshes the credentials in background {@code refresh_ahead_seconds}
+ *     before they expire, with random jitter up to {@code refresh_jitter_seconds}, until the provider is closed or
+ *     garbage-collected.
+ * <li>With {@code stale_while_revalidate}, requesting threads do not wait for a refresh, nor fail by a failed refresh, while
+ *     the credentials are valid for {@link #STALE_MARGIN}. In {@code sync} mode, one requesting thread at a time retries the
+ *     refresh. In {@code async} mode, background refreshes keep retrying it.
+ * </ul>
+ *
+ * <p>Calls, refreshes, and failures are recorded in {@link CredentialsMetrics}.
+ */
+abstract class RefreshableCredentialsProvider implements AWSCredentialsProvider, Closeable {
+    RefreshableCredentialsProvider(final String description, final RefreshSettings settings) {
+        this.description = description;
+        this.settings = settings;
+        this.metrics = CredentialsMetrics.of(description);
+        this.current = null;
+        this.inFlight = new AtomicReference<>();
+        this.scheduled = new AtomicReference<>();
+        this.closed = false;
+    }
+
+    /**
+     * Loads new credentials from the source. It is never called concurrently in a provider.
+     */
+    abstract ExpiringCredentials load();
+
+    /**
+     * Starts with credentials loaded in advance, instead of loading them on the first request.
+     */
+    final void initialize(final ExpiringCredentials credentials) {
+        this.current = credentials;
+        this.scheduleRefresh(credentials);
+    }
+
+    /**
+     * Releases resources to load credentials. It is called once on {@link #close()}.
+     */
+    void closeSource() {
+    }
+
+    @Override
+    public AWSCredentials getCredentials() {
+        return this.getExpiringCredentials().getCredentials();
+    }
+
+    /**
+     * Gets the latest credentials with their expiration, refreshing them as {@link #getCredentials()} does.
+     */
+    final ExpiringCredentials getExpiringCredentials() {
+        final ExpiringCredentials credentials = this.current;
+        if (credentials == null) {
+            this.metrics.recordGetCredentials(false);
+            return this.refreshAndWait(null);
+        }
+        final Instant now = Instant.now();
+        if (credentials.expiresWithin(BLOCKING_REFRESH_MARGIN, now)) {
+            if (this.settings.isStaleWhileRevalidate() && !credentials.expiresWithin(STALE_MARGIN, now)) {
+                return this.revalidate(credentials);
+            }
+            this.metrics.recordGetCredentials(false);
+            return this.refreshAndWait(credentials);
+        }
+        if (!this.settings.isAsync() && credentials.expiresWithin(this.settings.getRefreshAhead(), now)) {
+            return this.refreshIfNoneInFlight(credentials);
+        }
+        this.metrics.recordGetCredentials(true);
+        return credentials;
+    }
+
+    @Override
+    public void refresh() {
+        this.refreshAndWait(this.current);
+    }
+
+    @Override
+    public final void close() {
+        this.closed = true;
+        final ScheduledFuture<?> pending = this.scheduled.getAndSet(null);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        this.closeSource();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "(" + this.description + ")";
+    }
+
+    // Refreshes the credentials which the caller has seen, or waits for the refresh in flight. If another refresh has finished
+    // since the caller has seen them, its credentials are returned without starting another refresh.
+    private ExpiringCredentials refreshAndWait(final ExpiringCredentials seen) {
+        while (true) {
+            final ExpiringCredentials latest = this.current;
+            if (latest != null && latest != seen) {
+                return latest;
+            }
+            final CompletableFuture<ExpiringCredentials> mine = new CompletableFuture<>();
+            if (this.inFlight.compareAndSet(null, mine)) {
+                return this.runRefresh(mine);
+            }
+            final CompletableFuture<ExpiringCredentials> theirs = this.inFlight.get();
+            if (theirs != null) {
+                return join(theirs);
+            }
+            // The refresh in flight has just finished. Its credentials are returned on the next iteration, unless it has failed.
+        }
+    }
+
+    private ExpiringCredentials refreshIfNoneInFlight(final ExpiringCredentials fallback) {
+        final CompletableFuture<ExpiringCredentials> mine = new CompletableFuture<>();
+        if (!this.inFlight.compareAndSet(null, mine)) {
+            this.metrics.recordGetCredentials(true);
+            return fallback;
+        }
+        this.metrics.recordGetCredentials(false);
+        try {
+            return this.runRefresh(mine);
+        } catch (final RuntimeException ex) {
+            log.warn("Failed to refresh {} ahead of expiration. Using the current credentials.", this, ex);
+            return fallback;
+        }
+    }
+
+    private ExpiringCredentials revalidate(final ExpiringCredentials stale) {
+        if (this.settings.isAsync()) {
+            // Background refreshes are retried at shorter intervals as the credentials come close to expiring.
+            this.metrics.recordGetCredentials(true);
+            return stale;
+        }
+        return this.refreshIfNoneInFlight(stale);
+    }
+
+    private ExpiringCredentials runRefresh(final CompletableFuture<ExpiringCredentials> future) {
+        final long startedNanos = System.nanoTime();
+        try {
+            final ExpiringCredentials loaded = this.load();
+            this.metrics.recordRefresh(Duration.ofNanos(System.nanoTime() - startedNanos), loaded.getExpiration());
+            this.current = loaded;
+            this.scheduleRefresh(loaded);
+            future.complete(loaded);
+            return loaded;
+        } catch (final RuntimeException ex) {
+            this.metrics.recordFailure(ex);
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.inFlight.set(null);
+        }
+    }
+
+    private void refreshInBackground() {
+        if (this.closed) {
+            return;
+        }
+        final CompletableFuture<ExpiringCredentials> mine = new CompletableFuture<>();
+        if (!this.inFlight.compareAndSet(null, mine)) {
+            return;  // A requesting thread is refreshing. It schedules the next refresh by itself.
+        }
+        try {
+            this.runRefresh(mine);
+        } catch (final RuntimeException ex) {
+            final Duration retry = this.retryInterval();
+            log.warn("Failed to refresh {} in background. Retrying in {} seconds.", this, retry.getSeconds(), ex);
+            this.schedule(retry);
+        }
+    }
+
+    private void scheduleRefresh(final ExpiringCredentials credentials) {
+        if (!this.settings.isAsync() || !credentials.getExpiration().isPresent()) {
+            return;
+        }
+        final Duration remaining = Duration.between(Instant.now(), credentials.getExpiration().get());
+        final Duration jitter = this.settings.getRefreshJitter();
+        final long jitterMillis = jitter.isZero() ? 0L : ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1);
+        Duration delay = remaining.minus(this.settings.getRefreshAhead()).minusMillis(jitterMillis);
+        if (delay.isNegative()) {
+            // The credentials live shorter than refresh_ahead_seconds. Refresh halfway instead of refreshing continuously.
+            delay = remaining.dividedBy(2);
+        }
+        this.schedule(delay);
+    }
+
+    private Duration retryInterval() {
+        final ExpiringCredentials credentials = this.current;
+        if (credentials == null || !credentials.getExpiration().isPresent()) {
+            return BACKGROUND_RETRY_INTERVAL;
+        }
+        final Duration halfRemaining = Duration.between(Instant.now(), credentials.getExpiration().get()).dividedBy(2);
+        return halfRemaining.compareTo(BACKGROUND_RETRY_INTERVAL) < 0 ? halfRemaining : BACKGROUND_RETRY_INTERVAL;
+    }
+
+    private void schedule(final Duration delay) {
+        if (this.closed) {
+            return;
+        }
+        final ScheduledFuture<?> previous = this.scheduled.getAndSet(
+                RefreshScheduler.shared().schedule(this, RefreshableCredentialsProvider::refreshInBackground, delay));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        if (this.closed) {
+            // Closed while scheduling.
+            final ScheduledFuture<?> pending = this.scheduled.getAndSet(null);
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    private static ExpiringCredentials join(final CompletableFuture<ExpiringCredentials> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshableCredentialsProvider.class);
+
+    // Requesting threads wait for a refresh when the credentials expire within this margin.
+    static final Duration BLOCKING_REFRESH_MARGIN = Duration.ofSeconds(60);
+
+    // With stale_while_revalidate, credentials are served until this margin before expiring, to finish requests signed with them.
+    static final Duration STALE_MARGIN = Duration.ofSeconds(5);
+
+    private static final Duration BACKGROUND_RETRY_INTERVAL = Duration.ofSeconds(30);
+
+    private final String description;
+    private final RefreshSettings settings;
+    private final CredentialsMetrics metrics;
+    private final AtomicReference<CompletableFuture<ExpiringCredentials>> inFlight;
+
+    // The next background refresh in async mode, replaced whenever a refresh is scheduled.
+    private final AtomicReference<ScheduledFuture<?>> scheduled;
+
+    private volatile ExpiringCredentials current;
+    private volatile boolean closed;
+}
@@ -0,0 +1,139 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.EnvironmentVariableCredentialsProvider;
+import com.amazonaws.auth.SystemPropertiesCredentialsProvider;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link com.amazonaws.auth.AWSCredentialsProvider} which re-reads credentials from a local source, such as environment
+ * variables, system properties, or a profile file, on {@link #refresh()}.
+ *
+ * <p>Credentials are loaded once on construction so that a misconfiguration fails early. If the source has a change stamp,
+ * such as the modified time of a file, it is checked at most once per {@link #CHANGE_CHECK_INTERVAL_NANOS}, and credentials
+ * are re-read only when the stamp changes.
+ *
+ * <p>If re-reading fails after the first load, such as on a half-written file, the previous credentials are kept with a
+ * warning. The source is re-read when its stamp changes again.
+ */
+final class ReloadingCredentialsProvider implements AWSCredentialsProvider {
+    ReloadingCredentialsProvider(
+            final String description,
+            final Supplier<AWSCredentials> loader,
+            final Optional<Supplier<Object>> changeStamp) {
+        this.description = description;
+        this.loader = loader;
+        this.changeStamp = changeStamp;
+        this.metrics = CredentialsMetrics.of(description);
+        this.reload(Optional.empty());
+    }
+
+    static ReloadingCredentialsProvider ofEnvironmentVariables() {
+        return new ReloadingCredentialsProvider(
+                "environment variables", () -> new EnvironmentVariableCredentialsProvider().getCredentials(), Optional.empty());
+    }
+
+    static ReloadingCredentialsProvider ofSystemProperties() {
+        return new ReloadingCredentialsProvider(
+                "system properties", () -> new SystemPropertiesCredentialsProvider().getCredentials(), Optional.empty());
+    }
+
+    /**
+     * Creates a provider for a profile, which re-reads the profile file when it is modified so that rotated keys are picked up.
+     * The parsed file is shared with the other providers which look up profiles in the same file.
+     */
+    static ReloadingCredentialsProvider ofProfile(final Path profileFile, final String profileName) {
+        return new ReloadingCredentialsProvider(
+                "profile '" + profileName + "' in " + profileFile,
+                () -> ProfileFileCache.getCredentials(profileFile, profileName),
+                Optional.of(() -> FileStamp.of(profileFile)));
+    }
+
+    @Override
+    public AWSCredentials getCredentials() {
+        final Snapshot snapshot = this.current;
+        if (this.changeStamp.isPresent() && System.nanoTime() - snapshot.checkedAtNanos > CHANGE_CHECK_INTERVAL_NANOS) {
+            final AWSCredentials checked = this.reloadIfChanged(snapshot).credentials;
+            this.metrics.recordGetCredentials(checked == snapshot.credentials);
+            return checked;
+        }
+        this.metrics.recordGetCredentials(true);
+        return snapshot.credentials;
+    }
+
+    @Override
+    public void refresh() {
+        this.reload(Optional.of(this.current));
+    }
+
+    @Override
+    public String toString() {
+        return "ReloadingCredentialsProvider(" + this.description + ")";
+    }
+
+    private synchronized Snapshot reloadIfChanged(final Snapshot seen) {
+        final Snapshot latest = this.current;
+        if (latest != seen) {
+            return latest;  // Another thread has checked in the meantime.
+        }
+        final Object stamp = this.changeStamp.get().get();
+        if (Objects.equals(stamp, latest.stamp)) {
+            this.current = new Snapshot(latest.credentials, latest.stamp, System.nanoTime());
+            return this.current;
+        }
+        return this.reload(Optional.of(latest));
+    }
+
+    // Reloads credentials, or keeps the previous snapshot if any when reloading fails, such as on a half-written file while
+    // an editor saves it. The stamp of the failed source is recorded so that it is not re-read until it changes again.
+    private synchronized Snapshot reload(final Optional<Snapshot> previous) {
+        // Take the stamp before loading so that a change during loading is detected in the next check.
+        final Object stamp = this.changeStamp.isPresent() ? this.changeStamp.get().get() : null;
+        final long startedNanos = System.nanoTime();
+        final AWSCredentials credentials;
+        try {
+            credentials = this.loader.get();
+        } catch (final RuntimeException ex) {
+            this.metrics.recordFailure(ex);
+            if (!previous.isPresent()) {
+                throw ex;
+            }
+            log.warn("Failed to reload credentials from {}. Using the credentials loaded last.", this.description, ex);
+            this.current = new Snapshot(previous.get().credentials, stamp, System.nanoTime());
+            return this.current;
+        }
+        this.metrics.recordRefresh(Duration.ofNanos(System.nanoTime() - startedNanos), Optional.empty());
+        this.current = new Snapshot(credentials, stamp, System.nanoTime());
+        return this.current;
+    }
+
+    private static final class Snapshot {
+        Snapshot(final AWSCredentials credentials, final Object stamp, final long checkedAtNanos) {
+            this.credentials = credentials;
+            this.stamp = stamp;
+            this.checkedAtNanos = checkedAtNanos;
+        }
+
+        private final AWSCredentials credentials;
+        private final Object stamp;
+        private final long checkedAtNanos;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadingCredentialsProvider.class);
+
+    static final long CHANGE_CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String description;
+    private final Supplier<AWSCredentials> loader;
+    private final Optional<Supplier<Object>> changeStamp;
+    private final CredentialsMetrics metrics;
+
+    private volatile Snapshot current;
+}
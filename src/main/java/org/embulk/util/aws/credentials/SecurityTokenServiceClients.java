@@ -0,0 +1,285 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.AnonymousAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.embulk.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process-wide pool of {@link com.amazonaws.services.securitytoken.AWSSecurityTokenService} clients, shared among
+ * credential providers.
+ *
+ * <p>One client, and its connection pool, is shared per {@link Settings}, that is, per endpoint, region, and timeouts.
+ * Clients are authenticated with {@link com.amazonaws.auth.DefaultAWSCredentialsProviderChain} by default. Providers which
+ * call STS with other credentials, such as the previous role in a role chain, set them per request.
+ *
+ * <p>Calls through {@link Lease#call(String, Supplier)} are rate-limited process-wide per role ARN, endpoint, and rate limit
+ * settings with a {@link TokenBucket}, so that hundreds of tasks starting at once do not flood STS. Throttled and other
+ * retryable calls are retried with "decorrelated jitter" backoff instead of the SDK's retries, which are disabled for STS
+ * clients. Retries of many tasks then spread over time instead of hitting STS again all at once.
+ *
+ * @see <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/">Exponential Backoff And Jitter</a>
+ */
+final class SecurityTokenServiceClients {
+    private SecurityTokenServiceClients() {
+        // No instantiation.
+    }
+
+    /**
+     * Settings of an STS client, which are the key of the pool.
+     */
+    static final class Settings {
+        Settings(
+                final Optional<String> endpoint,
+                final Optional<String> region,
+                final int connectTimeoutMillis,
+                final int socketTimeoutMillis,
+                final double rateLimit,
+                final int rateLimitBurst,
+                final int maxRetries) {
+            this.endpoint = endpoint;
+            this.region = region;
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.socketTimeoutMillis = socketTimeoutMillis;
+            this.rateLimit = rateLimit;
+            this.rateLimitBurst = rateLimitBurst;
+            this.maxRetries = maxRetries;
+        }
+
+        static Settings of(final AwsCredentialsConfig task, final String prefix) {
+            if (task.getStsConnectTimeoutMillis() <= 0) {
+                throw new ConfigException("'" + prefix + "sts_connect_timeout_millis' must be positive.");
+            }
+            if (task.getStsSocketTimeoutMillis() <= 0) {
+                throw new ConfigException("'" + prefix + "sts_socket_timeout_millis' must be positive.");
+            }
+            if (!(task.getStsRateLimit() > 0.0)) {
+                throw new ConfigException("'" + prefix + "sts_rate_limit' must be positive.");
+            }
+            if (task.getStsRateLimitBurst() <= 0) {
+                throw new ConfigException("'" + prefix + "sts_rate_limit_burst' must be positive.");
+            }
+            if (task.getStsMaxRetries() < 0) {
+                throw new ConfigException("'" + prefix + "sts_max_retries' must not be negative.");
+            }
+            return new Settings(
+                    task.getStsEndpoint(),
+                    task.getStsRegion(),
+                    task.getStsConnectTimeoutMillis(),
+                    task.getStsSocketTimeoutMillis(),
+                    task.getStsRateLimit(),
+                    task.getStsRateLimitBurst(),
+                    task.getStsMaxRetries());
+        }
+
+        Optional<String> getEndpoint() {
+            return this.endpoint;
+        }
+
+        Optional<String> getRegion() {
+            return this.region;
+        }
+
+        // Rate limits and retries are not a part of the key. They are applied per call, not per client.
+
+        @Override
+        public boolean equals(final Object otherObject) {
+            if (this == otherObject) {
+                return true;
+            }
+            if (!(otherObject instanceof Settings)) {
+                return false;
+            }
+            final Settings other = (Settings) otherObject;
+            return this.endpoint.equals(other.endpoint)
+                    && this.region.equals(other.region)
+                    && this.connectTimeoutMillis == other.connectTimeoutMillis
+                    && this.socketTimeoutMillis == other.socketTimeoutMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.endpoint, this.region, this.connectTimeoutMillis, this.socketTimeoutMillis);
+        }
+
+        private final Optional<String> endpoint;
+        private final Optional<String> region;
+        private final int connectTimeoutMillis;
+        private final int socketTimeoutMillis;
+        private final double rateLimit;
+        private final int rateLimitBurst;
+        private final int maxRetries;
+    }
+
+    /**
+     * A lease of a pooled client. The client is shut down when its last lease is closed.
+     */
+    static final class Lease implements Closeable {
+        private Lease(final Settings settings, final AWSSecurityTokenService client, final Runnable release) {
+            this.settings = settings;
+            this.client = client;
+            this.release = release;
+            this.closed = new AtomicBoolean(false);
+        }
+
+        AWSSecurityTokenService get() {
+            return this.client;
+        }
+
+        Settings getSettings() {
+            return this.settings;
+        }
+
+        /**
+         * Calls STS for the role within the rate limit of the role, and retries the call if it is throttled or else retryable.
+         */
+        <T> T call(final String roleArn, final Supplier<T> call) {
+            final TokenBucket bucket = rateLimitOf(roleArn, this.settings);
+            long delayMillis = BASE_RETRY_DELAY_MILLIS;
+            for (int retries = 0; ; retries++) {
+                try {
+                    bucket.acquire();
+                    return call.get();
+                } catch (final SdkClientException ex) {
+                    if (retries >= this.settings.maxRetries || !isRetryable(ex)) {
+                        throw ex;
+                    }
+                    // "Decorrelated jitter": a random delay between the base and three times the previous delay.
+                    delayMillis = Math.min(MAX_RETRY_DELAY_MILLIS,
+                                           ThreadLocalRandom.current().nextLong(BASE_RETRY_DELAY_MILLIS, delayMillis * 3 + 1));
+                    log.debug("Retrying a call to STS for {} in {} ms: {}", roleArn, delayMillis, ex.getMessage());
+                    sleep(delayMillis);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SdkClientException("Interrupted while waiting for the rate limit of STS.", ex);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (this.closed.compareAndSet(false, true)) {
+                this.release.run();
+            }
+        }
+
+        private final Settings settings;
+        private final AWSSecurityTokenService client;
+        private final Runnable release;
+        private final AtomicBoolean closed;
+    }
+
+    static Lease acquire(final Settings settings) {
+        return new Lease(settings, POOL.acquire(settings, () -> create(settings)), () -> POOL.release(settings));
+    }
+
+    /**
+     * Leases a client which is not pooled, such as a client given by tests. The client is shut down when the lease is closed.
+     */
+    static Lease unpooled(final Settings settings, final AWSSecurityTokenService client) {
+        return new Lease(settings, client, client::shutdown);
+    }
+
+    /**
+     * Gets the rate limit of calls for the role, shared among providers which call the same endpoint with the same rate limit.
+     */
+    static TokenBucket rateLimitOf(final String roleArn, final Settings settings) {
+        final List<Object> key = Arrays.asList(roleArn, settings.endpoint, settings.region, settings.rateLimit, settings.rateLimitBurst);
+        return RATE_LIMITS.computeIfAbsent(key, k -> new TokenBucket(settings.rateLimit, settings.rateLimitBurst));
+    }
+
+    /**
+     * Returns whether a failed call is retried: throttling, retryable service errors such as 5xx, I/O failures, and timeouts.
+     *
+     * <p>Other client errors, such as a malformed endpoint, an unmarshalling error, or a signing failure, would only fail again.
+     * {@link com.amazonaws.AmazonClientException#isRetryable()} is not used as it is {@code true} by default.
+     */
+    static boolean isRetryable(final SdkClientException exception) {
+        if (exception instanceof AmazonServiceException) {
+            return RetryUtils.isThrottlingException(exception) || RetryUtils.isRetryableServiceException(exception);
+        }
+        if (exception instanceof ClientExecutionTimeoutException) {
+            return true;
+        }
+        for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Credentials for STS APIs which do not require signing, such as AssumeRoleWithWebIdentity.
+     */
+    static final AWSCredentialsProvider ANONYMOUS = new AWSStaticCredentialsProvider(new AnonymousAWSCredentials());
+
+    // use AWSSecurityTokenServiceClient, which connects to the global STS endpoint unless an endpoint or a region is specified
+    // https://javadoc.io/doc/com.amazonaws/aws-java-sdk-sts/1.11.0/com/amazonaws/services/securitytoken/AWSSecurityTokenServiceClient.html#AWSSecurityTokenServiceClient()
+    @SuppressWarnings("deprecation")
+    private static AWSSecurityTokenService create(final Settings settings) {
+        final ClientConfiguration configuration = new ClientConfiguration()
+                .withConnectionTimeout(settings.connectTimeoutMillis)
+                .withSocketTimeout(settings.socketTimeoutMillis)
+                .withMaxErrorRetry(0);  // Retried in Lease#call with jitter.
+        final AWSSecurityTokenServiceClient client =
+                new AWSSecurityTokenServiceClient(DefaultAWSCredentialsProviderChain.getInstance(), configuration);
+        if (settings.endpoint.isPresent()) {
+            client.setEndpoint(settings.endpoint.get());
+        } else if (settings.region.isPresent()) {
+            client.setEndpoint(regionalEndpoint(settings.region.get()));
+        }
+        if (settings.region.isPresent()) {
+            // The region cannot be derived from some endpoints, such as VPC endpoints, to sign requests.
+            client.setSignerRegionOverride(settings.region.get());
+        }
+        return client;
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SdkClientException("Interrupted while retrying a call to STS.", ex);
+        }
+    }
+
+    private static String regionalEndpoint(final String region) {
+        if (region.startsWith("cn-")) {
+            return "https://sts." + region + ".amazonaws.com.cn";
+        }
+        return "https://sts." + region + ".amazonaws.com";
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityTokenServiceClients.class);
+
+    private static final long BASE_RETRY_DELAY_MILLIS = 100L;
+    private static final long MAX_RETRY_DELAY_MILLIS = 20_000L;
+
+    // Rate limits of calls to STS by role ARN, endpoint, and rate limit settings, shared among providers in the process.
+    private static final ConcurrentHashMap<List<Object>, TokenBucket> RATE_LIMITS = new ConcurrentHashMap<>();
+
+    private static final ReferenceCountedCache<Settings, AWSSecurityTokenService> POOL =
+            new ReferenceCountedCache<>(AWSSecurityTokenService::shutdown);
+}
@@ -0,0 +1,46 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSSessionCredentialsProvider;
+import com.amazonaws.auth.BasicSessionCredentials;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@code auth_method: session}, with {@code access_key_id}, {@code secret_access_key}, and {@code session_token}.
+ */
+final class SessionAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String accessKeyIdOption = prefix + "access_key_id";
+        final String secretAccessKeyOption = prefix + "secret_access_key";
+        final String sessionTokenOption = prefix + "session_token";
+        final String accessKeyId = AuthMethods.require(task.getAccessKeyId(),
+                "'" + accessKeyIdOption + "', '" + secretAccessKeyOption + "', '" + sessionTokenOption + "'");
+        final String secretAccessKey = AuthMethods.require(task.getSecretAccessKey(),
+                "'" + secretAccessKeyOption + "', '" + sessionTokenOption + "'");
+        final String sessionToken = AuthMethods.require(task.getSessionToken(),
+                "'" + sessionTokenOption + "'");
+        final AWSSessionCredentials creds = new BasicSessionCredentials(accessKeyId, secretAccessKey, sessionToken);
+        final CredentialsMetrics metrics = CredentialsMetrics.of("session credentials");
+        return new AWSSessionCredentialsProvider() {
+            public AWSSessionCredentials getCredentials() {
+                metrics.recordGetCredentials(true);
+                return creds;
+            }
+
+            public void refresh() {
+            }
+        };
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.ACCESS_KEY_ID, AuthOption.SECRET_ACCESS_KEY, AuthOption.SESSION_TOKEN));
+}
@@ -0,0 +1,60 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to {@link com.amazonaws.auth.AWSCredentialsProvider} shared process-wide among identical credential configurations.
+ *
+ * <p>It is returned from {@link AwsCredentials#getSharedAWSCredentialsProvider(AwsCredentialsTask)} and
+ * {@link AwsCredentials#getSharedAWSCredentialsProvider(AwsCredentialsTaskWithPrefix)}. Every handle must be closed when
+ * its user finishes. The underlying provider is closed when the last handle for the same configuration is closed.
+ *
+ * <p>It is thread-safe as long as the underlying provider is thread-safe, as all providers from {@link AwsCredentials} are.
+ */
+public final class SharedAwsCredentialsProvider implements AWSCredentialsProvider, Closeable {
+    SharedAwsCredentialsProvider(
+            final ReferenceCountedCache<CredentialsConfigKey, AWSCredentialsProvider> cache,
+            final CredentialsConfigKey key,
+            final AWSCredentialsProvider delegate) {
+        this.cache = cache;
+        this.key = key;
+        this.delegate = delegate;
+        this.closed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public AWSCredentials getCredentials() {
+        this.ensureOpen();
+        return this.delegate.getCredentials();
+    }
+
+    @Override
+    public void refresh() {
+        this.ensureOpen();
+        this.delegate.refresh();
+    }
+
+    /**
+     * Releases this handle. It is no-op when this handle has already been closed.
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            this.cache.release(this.key);
+        }
+    }
+
+    private void ensureOpen() {
+        if (this.closed.get()) {
+            throw new IllegalStateException("The shared AWS credentials provider has already been closed.");
+        }
+    }
+
+    private final ReferenceCountedCache<CredentialsConfigKey, AWSCredentialsProvider> cache;
+    private final CredentialsConfigKey key;
+    private final AWSCredentialsProvider delegate;
+    private final AtomicBoolean closed;
+}
@@ -0,0 +1,42 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide cache of expiring credentials per source, such as an endpoint or a command, shared among providers.
+ *
+ * <p>Credentials of a source are loaded by at most one thread at a time. The other threads which need them wait for it,
+ * and reuse its result.
+ */
+final class SharedCredentialsCache {
+    private SharedCredentialsCache() {
+        // No instantiation.
+    }
+
+    /**
+     * Gets credentials of a source cached, or loads them if the cached ones expire within {@code minRemaining}.
+     */
+    static ExpiringCredentials get(final String source, final Duration minRemaining, final Supplier<ExpiringCredentials> loader) {
+        final ExpiringCredentials cached = ENTRIES.get(source);
+        if (cached != null && !cached.expiresWithin(minRemaining, Instant.now())) {
+            return cached;
+        }
+        synchronized (LOCKS.computeIfAbsent(source, key -> new Object())) {
+            final ExpiringCredentials current = ENTRIES.get(source);
+            if (current != null && current != cached && !current.expiresWithin(minRemaining, Instant.now())) {
+                return current;  // Another thread has loaded in the meantime.
+            }
+            final ExpiringCredentials loaded = loader.get();
+            ENTRIES.put(source, loaded);
+            return loaded;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, ExpiringCredentials> ENTRIES = new ConcurrentHashMap<>();
+
+    // Loading may take long, for example, to run a process. It is locked per source, not in ConcurrentHashMap#compute.
+    private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,50 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+
+/**
+ * A token bucket which permits calls at a steady rate with bursts up to its capacity.
+ *
+ * <p>A call reserves a token even when the bucket is empty, and waits until its token is refilled. Reservations are ordered
+ * so that waiting calls proceed in turn at the rate, instead of all retrying at once when a token is refilled.
+ */
+final class TokenBucket {
+    TokenBucket(final double permitsPerSecond, final int burst) {
+        this.nanosPerPermit = NANOS_PER_SECOND / permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAtNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a token, and returns how long to wait until it is available, or zero if available now.
+     */
+    synchronized Duration reserve() {
+        final long now = System.nanoTime();
+        this.tokens = Math.min(this.burst, this.tokens + (now - this.refilledAtNanos) / this.nanosPerPermit);
+        this.refilledAtNanos = now;
+        this.tokens -= 1.0;
+        if (this.tokens >= 0.0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long) Math.ceil(-this.tokens * this.nanosPerPermit));
+    }
+
+    /**
+     * Waits until a token is available.
+     */
+    void acquire() throws InterruptedException {
+        final Duration wait = this.reserve();
+        if (!wait.isZero()) {
+            Thread.sleep(wait.toMillis(), (int) (wait.toNanos() % 1_000_000L));
+        }
+    }
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double nanosPerPermit;
+    private final int burst;
+
+    private double tokens;
+    private long refilledAtNanos;
+}
@@ -0,0 +1,58 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@code auth_method: web_identity}, with AWS STS AssumeRoleWithWebIdentity.
+ *
+ * <p>It requires {@code com.amazonaws:aws-java-sdk-sts}.
+ */
+final class WebIdentityAuthMethod implements AuthMethod {
+    @Override
+    public Set<AuthOption> getAcceptedOptions() {
+        return ACCEPTED_OPTIONS;
+    }
+
+    @Override
+    public AWSCredentialsProvider create(final String prefix, final AwsCredentialsConfig task, final RefreshSettings refreshSettings) {
+        final String accountIdOption = prefix + "account_id";
+        final String roleNameOption = prefix + "role_name";
+
+        final String arn;
+        if (task.getAccountId().isPresent() || task.getRoleName().isPresent()) {
+            final String accountId = AuthMethods.require(task.getAccountId(),
+                    "'" + accountIdOption + "'");
+            final String roleName = AuthMethods.require(task.getRoleName(),
+                    "'" + roleNameOption + "'");
+            arn = AuthMethods.roleArn(task, accountId, roleName);
+        } else {
+            arn = AuthMethods.requireEnvironmentVariable(WebIdentityCredentialsProvider.ROLE_ARN_ENVIRONMENT_VARIABLE,
+                    "'" + accountIdOption + "', '" + roleNameOption + "'");
+        }
+        final String tokenFile;
+        if (task.getWebIdentityTokenFile().isPresent()) {
+            tokenFile = task.getWebIdentityTokenFile().get();
+        } else {
+            tokenFile = AuthMethods.requireEnvironmentVariable(WebIdentityCredentialsProvider.TOKEN_FILE_ENVIRONMENT_VARIABLE,
+                    "'" + prefix + "web_identity_token_file'");
+        }
+        return new WebIdentityCredentialsProvider(
+                SecurityTokenServiceClients.acquire(SecurityTokenServiceClients.Settings.of(task, prefix)),
+                arn,
+                task.getSessionName(),
+                Paths.get(tokenFile),
+                task.getDurationInSeconds(),
+                refreshSettings);
+    }
+
+    private static final Set<AuthOption> ACCEPTED_OPTIONS = Collections.unmodifiableSet(EnumSet.of(
+            AuthOption.ACCOUNT_ID,
+            AuthOption.ROLE_NAME,
+            AuthOption.WEB_IDENTITY_TOKEN_FILE,
+            AuthOption.STS_ENDPOINT,
+            AuthOption.STS_REGION));
+}
@@ -0,0 +1,102 @@
+package org.embulk.util.aws.credentials;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.AWSSessionCredentialsProvider;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityRequest;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link com.amazonaws.auth.AWSSessionCredentialsProvider} for AssumeRoleWithWebIdentity, such as IAM roles for service
+ * accounts (IRSA) in Amazon EKS, refreshed as {@link RefreshableCredentialsProvider}.
+ *
+ * <p>The web identity token file is read again only when it is modified, for example, by the kubelet rotating it. Its contents
+ * are cached process-wide per path.
+ */
+final class WebIdentityCredentialsProvider extends RefreshableCredentialsProvider implements AWSSessionCredentialsProvider {
+    WebIdentityCredentialsProvider(
+            final SecurityTokenServiceClients.Lease sts,
+            final String roleArn,
+            final String sessionName,
+            final Path tokenFile,
+            final int durationInSeconds,
+            final RefreshSettings settings) {
+        super("AssumeRoleWithWebIdentity " + roleArn, settings);
+        this.sts = sts;
+        this.roleArn = roleArn;
+        this.sessionName = sessionName;
+        this.tokenFile = tokenFile;
+        this.durationInSeconds = durationInSeconds;
+    }
+
+    @Override
+    public AWSSessionCredentials getCredentials() {
+        return (AWSSessionCredentials) super.getCredentials();
+    }
+
+    @Override
+    ExpiringCredentials load() {
+        final AssumeRoleWithWebIdentityRequest request = new AssumeRoleWithWebIdentityRequest()
+                .withRoleArn(this.roleArn)
+                .withRoleSessionName(this.sessionName)
+                .withWebIdentityToken(readToken(this.tokenFile))
+                .withDurationSeconds(this.durationInSeconds);
+        request.setRequestCredentialsProvider(SecurityTokenServiceClients.ANONYMOUS);
+        final Credentials credentials = this.sts.call(this.roleArn, () -> this.sts.get().assumeRoleWithWebIdentity(request)).getCredentials();
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(credentials.getAccessKeyId(), credentials.getSecretAccessKey(), credentials.getSessionToken()),
+                Optional.of(credentials.getExpiration().toInstant()));
+    }
+
+    @Override
+    void closeSource() {
+        this.sts.close();
+    }
+
+    private static String readToken(final Path tokenFile) {
+        final Path normalized = tokenFile.toAbsolutePath().normalize();
+        final FileStamp stamp = FileStamp.of(normalized);
+        final Token cached = TOKENS.get(normalized);
+        if (cached != null && cached.stamp.equals(stamp)) {
+            return cached.value;
+        }
+        final String value;
+        try {
+            value = new String(Files.readAllBytes(normalized), StandardCharsets.UTF_8).trim();
+        } catch (final IOException ex) {
+            throw new SdkClientException("Unable to read the web identity token file: " + normalized, ex);
+        }
+        TOKENS.put(normalized, new Token(stamp, value));
+        return value;
+    }
+
+    private static final class Token {
+        Token(final FileStamp stamp, final String value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+
+        private final FileStamp stamp;
+        private final String value;
+    }
+
+    static final String ROLE_ARN_ENVIRONMENT_VARIABLE = "AWS_ROLE_ARN";
+    static final String TOKEN_FILE_ENVIRONMENT_VARIABLE = "AWS_WEB_IDENTITY_TOKEN_FILE";
+    static final String ROLE_SESSION_NAME_ENVIRONMENT_VARIABLE = "AWS_ROLE_SESSION_NAME";
+
+    // Web identity token files by path, shared among providers in the process.
+    private static final ConcurrentHashMap<Path, Token> TOKENS = new ConcurrentHashMap<>();
+
+    private final SecurityTokenServiceClients.Lease sts;
+    private final String roleArn;
+    private final String sessionName;
+    private final Path tokenFile;
+    private final int durationInSeconds;
+}
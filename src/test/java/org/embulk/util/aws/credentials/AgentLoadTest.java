@@ -0,0 +1,123 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.embulk.config.ConfigException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AgentLoadTest {
+    @BeforeEach
+    public void startServer() throws IOException {
+        this.server = LocalCredentialsServer.start(Duration.ofHours(1));
+        this.directory = Files.createTempDirectory("embulk-aws-credentials-agent");
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        this.server.close();
+        try (final Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testColdStartOfManyProcessesFetchesOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(100));
+
+        // Every provider stands for an Embulk process on the host, with its own provider and its own source.
+        final ConcurrentLoad load = ConcurrentLoad.run(20, 1, () -> {
+            final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task());
+            try (final Closeable closing = (Closeable) provider) {
+                provider.getCredentials();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+        assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+    }
+
+    @Test
+    public void testLaterProcessReadsSharedCredentials() throws Exception {
+        final String first;
+        final AWSCredentialsProvider agent = AwsCredentials.getAWSCredentialsProvider(this.task());
+        try (final Closeable closing = (Closeable) agent) {
+            first = agent.getCredentials().getAWSAccessKeyId();
+        }
+        final long calls = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS);
+
+        final AWSCredentialsProvider later = AwsCredentials.getAWSCredentialsProvider(this.task());
+        try (final Closeable closing = (Closeable) later) {
+            assertEquals(first, later.getCredentials().getAWSAccessKeyId());
+        }
+        assertEquals(calls, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+    }
+
+    @Test
+    public void testRefreshIsSharedAmongProcesses() throws Exception {
+        // The first credentials are within refresh_ahead_seconds from the beginning.
+        this.server.setLifetime(Duration.ofSeconds(90));
+        final Map<String, Object> values = this.values();
+        values.put("refresh_ahead_seconds", 100);
+        final AWSCredentialsProvider first = AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values));
+        final AWSCredentialsProvider second = AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values));
+        try (final Closeable closingFirst = (Closeable) first; final Closeable closingSecond = (Closeable) second) {
+            final String initial = first.getCredentials().getAWSAccessKeyId();
+            this.server.setLifetime(Duration.ofHours(1));
+
+            final String refreshedBySecond = second.getCredentials().getAWSAccessKeyId();
+            final String refreshedByFirst = first.getCredentials().getAWSAccessKeyId();
+
+            assertNotEquals(initial, refreshedBySecond);
+            assertEquals(refreshedBySecond, refreshedByFirst);
+            assertEquals(2, this.server.getIssued());
+        }
+    }
+
+    @Test
+    public void testRejectsUnsupportedSource() {
+        final Map<String, Object> values = this.values();
+        values.put("agent_source_auth_method", "basic");
+        assertThrows(ConfigException.class, () -> AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values)));
+    }
+
+    @Test
+    public void testRejectsAgentOptionsOfOtherMethods() {
+        final Map<String, Object> values = this.values();
+        values.put("auth_method", "instance");
+        assertThrows(ConfigException.class, () -> AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values)));
+    }
+
+    private AwsCredentialsTask task() {
+        return TestTasks.of(this.values());
+    }
+
+    private Map<String, Object> values() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "agent");
+        values.put("agent_source_auth_method", "instance");
+        values.put("agent_dir", this.directory.toString());
+        values.put("instance_metadata_endpoint", this.server.getInstanceMetadataEndpoint());
+        values.put("refresh_jitter_seconds", 0);
+        return values;
+    }
+
+    private LocalCredentialsServer server;
+    private Path directory;
+}
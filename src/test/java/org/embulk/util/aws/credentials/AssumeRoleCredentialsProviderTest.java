@@ -0,0 +1,193 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import com.amazonaws.services.securitytoken.AbstractAWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
+import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AssumeRoleCredentialsProviderTest {
+    @BeforeEach
+    public void setDefaultCaller() {
+        // DefaultAWSCredentialsProviderChain finds the caller in the system properties.
+        setCaller("CALLER1");
+    }
+
+    @AfterEach
+    public void clearCaller() {
+        System.clearProperty("aws.accessKeyId");
+        System.clearProperty("aws.secretKey");
+    }
+
+    @Test
+    public void testReusesCachedCredentialsWithEnoughLifetime() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofHours(1));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+
+        final String first = provider(sts, cache, Duration.ofMinutes(15)).getCredentials().getAWSAccessKeyId();
+        final String second = provider(sts, cache, Duration.ofMinutes(15)).getCredentials().getAWSAccessKeyId();
+        assertEquals(first, second);
+        assertEquals(1, sts.calls.get());
+    }
+
+    @Test
+    public void testAssumesAgainWithoutEnoughRemainingLifetime() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofMinutes(20));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+
+        final String first = provider(sts, cache, Duration.ofMinutes(15)).getCredentials().getAWSAccessKeyId();
+        final String second = provider(sts, cache, Duration.ofMinutes(30)).getCredentials().getAWSAccessKeyId();
+        assertNotEquals(first, second);
+        assertEquals(2, sts.calls.get());
+    }
+
+    @Test
+    public void testDoesNotReuseCredentialsOfAnotherCaller() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofHours(1));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+
+        final String first = provider(sts, cache, Duration.ofMinutes(15)).getCredentials().getAWSAccessKeyId();
+        setCaller("CALLER2");
+        final String second = provider(sts, cache, Duration.ofMinutes(15)).getCredentials().getAWSAccessKeyId();
+        assertNotEquals(first, second);
+        assertEquals(2, sts.calls.get());
+    }
+
+    @Test
+    public void testDoesNotReuseCredentialsFromAnotherEndpoint() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofHours(1));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+
+        final String first = provider(sts, stsSettings(Optional.empty(), Optional.empty()), cache, Duration.ofMinutes(15))
+                .getCredentials().getAWSAccessKeyId();
+        final String second = provider(sts, stsSettings(Optional.of("http://127.0.0.1:8080"), Optional.empty()), cache, Duration.ofMinutes(15))
+                .getCredentials().getAWSAccessKeyId();
+        assertNotEquals(first, second);
+        assertEquals(2, sts.calls.get());
+    }
+
+    @Test
+    public void testDoesNotReuseCredentialsFromAnotherRegion() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofHours(1));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+
+        final String first = provider(sts, stsSettings(Optional.empty(), Optional.of("us-east-1")), cache, Duration.ofMinutes(15))
+                .getCredentials().getAWSAccessKeyId();
+        final String second = provider(sts, stsSettings(Optional.empty(), Optional.of("eu-west-1")), cache, Duration.ofMinutes(15))
+                .getCredentials().getAWSAccessKeyId();
+        assertNotEquals(first, second);
+        assertEquals(2, sts.calls.get());
+    }
+
+    @Test
+    public void testCachesEachHopPerPreviousHop() {
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService(Duration.ofHours(1));
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+        final AssumeRoleCredentialsProvider firstHop = provider(sts, "first", Optional.empty(), cache);
+        final AssumeRoleCredentialsProvider anotherFirstHop = provider(sts, "another", Optional.empty(), cache);
+
+        final String last = provider(sts, "last", Optional.of(firstHop), cache).getCredentials().getAWSAccessKeyId();
+        assertEquals(last, provider(sts, "last", Optional.of(firstHop), cache).getCredentials().getAWSAccessKeyId());
+        assertEquals(1, sts.calls.get());
+        assertNotEquals(last, provider(sts, "last", Optional.of(anotherFirstHop), cache).getCredentials().getAWSAccessKeyId());
+        assertEquals(2, sts.calls.get());
+    }
+
+    private static AssumeRoleCredentialsProvider provider(
+            final FakeSecurityTokenService sts, final FileCredentialsCache cache, final Duration minRemaining) {
+        return provider(sts, stsSettings(Optional.empty(), Optional.empty()), "test", Optional.empty(), cache, minRemaining);
+    }
+
+    private static AssumeRoleCredentialsProvider provider(
+            final FakeSecurityTokenService sts,
+            final SecurityTokenServiceClients.Settings stsSettings,
+            final FileCredentialsCache cache,
+            final Duration minRemaining) {
+        return provider(sts, stsSettings, "test", Optional.empty(), cache, minRemaining);
+    }
+
+    private static AssumeRoleCredentialsProvider provider(
+            final FakeSecurityTokenService sts,
+            final String roleName,
+            final Optional<AssumeRoleCredentialsProvider> previousHop,
+            final FileCredentialsCache cache) {
+        return provider(sts, stsSettings(Optional.empty(), Optional.empty()), roleName, previousHop, cache, Duration.ofMinutes(15));
+    }
+
+    private static AssumeRoleCredentialsProvider provider(
+            final FakeSecurityTokenService sts,
+            final SecurityTokenServiceClients.Settings stsSettings,
+            final String roleName,
+            final Optional<AssumeRoleCredentialsProvider> previousHop,
+            final FileCredentialsCache cache,
+            final Duration minRemaining) {
+        return new AssumeRoleCredentialsProvider(
+                SecurityTokenServiceClients.unpooled(stsSettings, sts),
+                "arn:aws:iam::123456789012:role/" + roleName,
+                "embulk",
+                Optional.empty(),
+                3600,
+                RefreshSettings.of(syncTask(), ""),
+                Optional.of(cache),
+                minRemaining,
+                previousHop);
+    }
+
+    private static SecurityTokenServiceClients.Settings stsSettings(final Optional<String> endpoint, final Optional<String> region) {
+        return new SecurityTokenServiceClients.Settings(endpoint, region, 10000, 50000, 10.0, 20, 5);
+    }
+
+    private static TestTask syncTask() {
+        final ConfigMapperFactory factory = ConfigMapperFactory.withDefault();
+        final ConfigSource config = factory.newConfigSource()
+                .set("refresh_ahead_seconds", 0)
+                .set("refresh_jitter_seconds", 0);
+        return factory.createConfigMapper().map(config, TestTask.class);
+    }
+
+    private static void setCaller(final String accessKeyId) {
+        System.setProperty("aws.accessKeyId", accessKeyId);
+        System.setProperty("aws.secretKey", "secret-" + accessKeyId);
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private static final class FakeSecurityTokenService extends AbstractAWSSecurityTokenService {
+        FakeSecurityTokenService(final Duration lifetime) {
+            this.lifetime = lifetime;
+        }
+
+        @Override
+        public AssumeRoleResult assumeRole(final AssumeRoleRequest request) {
+            final int call = this.calls.incrementAndGet();
+            return new AssumeRoleResult().withCredentials(new Credentials(
+                    "ASIA" + call, "secret" + call, "token" + call, Date.from(Instant.now().plus(this.lifetime).truncatedTo(ChronoUnit.SECONDS))));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private final Duration lifetime;
+        private final AtomicInteger calls = new AtomicInteger();
+    }
+
+    @TempDir
+    Path directory;
+}
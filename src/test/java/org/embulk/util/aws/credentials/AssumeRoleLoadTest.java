@@ -0,0 +1,370 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AssumeRoleLoadTest {
+    @BeforeEach
+    public void startServer() throws IOException {
+        // The STS client signs AssumeRole with DefaultAWSCredentialsProviderChain.
+        System.setProperty("aws.accessKeyId", "AKIALOCALCALLER");
+        System.setProperty("aws.secretKey", "local-caller-secret-access-key");
+        this.server = LocalCredentialsServer.start(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        this.server.close();
+        System.clearProperty("aws.accessKeyId");
+        System.clearProperty("aws.secretKey");
+    }
+
+    @Test
+    public void testColdStartAssumesRoleOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(200));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 1, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+        }
+    }
+
+    @Test
+    public void testSharedProvidersAssumeRoleOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(200));
+        try (final SharedAwsCredentialsProvider holder = AwsCredentials.getSharedAWSCredentialsProvider(this.task("sync"))) {
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 1, () -> {
+                try (final SharedAwsCredentialsProvider shared = AwsCredentials.getSharedAWSCredentialsProvider(this.task("sync"))) {
+                    shared.getCredentials();
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+        }
+    }
+
+    @Test
+    public void testNoRefreshStormInSyncMode() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLatency(Duration.ofMillis(200));
+            final long callsBefore = this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE);
+            final long uncachedBefore = uncachedCount(METRICS);
+
+            // Every call finds the credentials within refresh_ahead_seconds.
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            final long calls = this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE) - callsBefore;
+            assertTrue(calls > 0);
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.ASSUME_ROLE));
+            // Only the callers which refreshed waited for STS. The others got the current credentials meanwhile.
+            final long uncached = uncachedCount(METRICS) - uncachedBefore;
+            assertTrue(uncached <= calls, () -> uncached + " callers waited for " + calls + " refreshes: " + load);
+        }
+    }
+
+    @Test
+    public void testExpiringCredentialsAreRefreshedOnce() throws Exception {
+        // The first credentials expire within the margin in which requesting threads wait for a refresh.
+        this.server.setLifetime(Duration.ofSeconds(30));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLifetime(Duration.ofHours(1));
+            this.server.setLatency(Duration.ofMillis(200));
+
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 20, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(2, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+        }
+    }
+
+    @Test
+    public void testCallerWhichHasSeenExpiringCredentialsTakesFinishedRefresh() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(30));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLifetime(Duration.ofHours(1));
+
+            // The late caller has seen the expiring credentials, and stops until another caller has refreshed them.
+            final CountDownLatch lateHasSeen = new CountDownLatch(1);
+            final CountDownLatch refreshed = new CountDownLatch(1);
+            AwsCredentials.setMetrics(new AwsCredentialsMetrics() {
+                @Override
+                public void recordGetCredentials(final String provider, final boolean cached) {
+                    if (!cached && Thread.currentThread().getName().equals(LATE_CALLER)) {
+                        lateHasSeen.countDown();
+                        awaitUninterruptibly(refreshed);
+                    }
+                }
+            });
+            try {
+                final AtomicReference<String> lateAccessKeyId = new AtomicReference<>();
+                final Thread late = new Thread(() -> lateAccessKeyId.set(provider.getCredentials().getAWSAccessKeyId()), LATE_CALLER);
+                late.start();
+                lateHasSeen.await();
+                final String refreshedAccessKeyId = provider.getCredentials().getAWSAccessKeyId();
+                refreshed.countDown();
+                late.join();
+
+                assertEquals(refreshedAccessKeyId, lateAccessKeyId.get());
+                assertEquals(2, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+            } finally {
+                AwsCredentials.setMetrics(null);
+            }
+        }
+    }
+
+    @Test
+    public void testNoRefreshStormInAsyncMode() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("async"));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLatency(Duration.ofMillis(200));
+            final long uncachedBefore = uncachedCount(METRICS);
+
+            // The background thread refreshes the credentials again and again while callers keep reading.
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.ASSUME_ROLE));
+            // No caller waited for STS.
+            assertEquals(0, uncachedCount(METRICS) - uncachedBefore, load::toString);
+        }
+    }
+
+    @Test
+    public void testThrottledAssumeRoleIsRetried() throws Exception {
+        this.server.throttle(LocalCredentialsServer.Api.ASSUME_ROLE, 2);
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            final ConcurrentLoad load = ConcurrentLoad.run(100, 1, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(3, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.ASSUME_ROLE));
+        }
+    }
+
+    @Test
+    public void testStartupStormIsRateLimitedAndRetried() throws Exception {
+        this.server.throttle(LocalCredentialsServer.Api.ASSUME_ROLE, 20);
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "assume_role");
+        values.put("account_id", "000000000000");
+        values.put("role_name", "embulk-local-startup");
+        values.put("sts_endpoint", this.server.getStsEndpoint());
+        values.put("sts_rate_limit", 50.0);
+        values.put("sts_rate_limit_burst", 10);
+        values.put("sts_max_retries", 10);
+
+        // Every task has its own provider, as plugins without shared providers do.
+        final long startedNanos = System.nanoTime();
+        final ConcurrentLoad load = ConcurrentLoad.run(100, 1, () -> {
+            final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values));
+            try (final Closeable closing = (Closeable) provider) {
+                provider.getCredentials();
+            } catch (final IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - startedNanos);
+
+        assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+        assertEquals(120, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+        // 110 calls beyond the burst of 10 at 50 calls per second.
+        assertTrue(elapsed.compareTo(Duration.ofMillis(2000)) >= 0, elapsed::toString);
+    }
+
+    @Test
+    public void testBackgroundRefreshesOfManyProvidersAreCapped() throws Exception {
+        // The credentials are refreshed halfway, in 5 seconds, all at once.
+        this.server.setLifetime(Duration.ofSeconds(10));
+        final List<AWSCredentialsProvider> providers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                final Map<String, Object> values = new HashMap<>();
+                values.put("auth_method", "assume_role");
+                values.put("account_id", "000000000000");
+                values.put("role_name", "embulk-local-many-" + i);
+                values.put("sts_endpoint", this.server.getStsEndpoint());
+                values.put("refresh_mode", "async");
+                values.put("refresh_jitter_seconds", 0);
+                final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values));
+                providers.add(provider);
+                provider.getCredentials();
+            }
+            this.server.setLatency(Duration.ofMillis(100));
+
+            final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (this.server.getIssued() < 100 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+
+            assertEquals(100, this.server.getIssued());
+            assertTrue(this.server.getMaxConcurrency(LocalCredentialsServer.Api.ASSUME_ROLE) <= RefreshScheduler.MAX_CONCURRENT_REFRESHES);
+            final List<String> refreshThreads = new ArrayList<>();
+            for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("embulk-aws-credentials-refresh")) {
+                    refreshThreads.add(thread.getName());
+                }
+            }
+            // The workers and the scheduler.
+            assertTrue(refreshThreads.size() <= RefreshScheduler.MAX_CONCURRENT_REFRESHES + 1, refreshThreads::toString);
+        } finally {
+            for (final AWSCredentialsProvider provider : providers) {
+                ((Closeable) provider).close();
+            }
+        }
+    }
+
+    @Test
+    public void testOutageKeepsCurrentCredentials() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync"));
+        try (final Closeable closing = (Closeable) provider) {
+            final String current = provider.getCredentials().getAWSAccessKeyId();
+            this.server.setOutage(true);
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), () -> {
+                if (!current.equals(provider.getCredentials().getAWSAccessKeyId())) {
+                    throw new IllegalStateException("Credentials changed during the outage.");
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.ASSUME_ROLE));
+
+            this.server.setOutage(false);
+            final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            String recovered = provider.getCredentials().getAWSAccessKeyId();
+            while (current.equals(recovered) && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+                recovered = provider.getCredentials().getAWSAccessKeyId();
+            }
+            assertNotEquals(current, recovered);
+        }
+    }
+
+    @Test
+    public void testRoleChainSignsEachHopWithThePreviousHop() throws Exception {
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.chainTask("embulk-last", Optional.empty()));
+        try (final Closeable closing = (Closeable) provider) {
+            final ConcurrentLoad load = ConcurrentLoad.run(100, 1, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            final List<String> firstSigners = this.server.getAssumeRoleSigners(FIRST_HOP_ARN);
+            assertEquals(Collections.singletonList("AKIALOCALCALLER"), firstSigners);
+            final List<String> lastSigners = this.server.getAssumeRoleSigners(LAST_ROLE_ARN_PREFIX + "embulk-last");
+            assertEquals(1, lastSigners.size());
+            // The first hop got the first credentials the server issued.
+            assertEquals("ASIALOCAL1", lastSigners.get(0));
+        }
+    }
+
+    @Test
+    public void testRoleChainCachesEachHop() throws Exception {
+        final String cacheDir = this.directory.toString();
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.chainTask("embulk-last", Optional.of(cacheDir)));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+        }
+        assertEquals(2, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+
+        // Both hops are taken from the cache.
+        final AWSCredentialsProvider again = AwsCredentials.getAWSCredentialsProvider(this.chainTask("embulk-last", Optional.of(cacheDir)));
+        try (final Closeable closing = (Closeable) again) {
+            again.getCredentials();
+        }
+        assertEquals(2, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+
+        // Only the last role is assumed, with the first hop from the cache.
+        final AWSCredentialsProvider another = AwsCredentials.getAWSCredentialsProvider(this.chainTask("embulk-another", Optional.of(cacheDir)));
+        try (final Closeable closing = (Closeable) another) {
+            another.getCredentials();
+        }
+        assertEquals(3, this.server.getCalls(LocalCredentialsServer.Api.ASSUME_ROLE));
+        assertEquals(1, this.server.getAssumeRoleSigners(FIRST_HOP_ARN).size());
+        assertEquals(Collections.singletonList("ASIALOCAL1"), this.server.getAssumeRoleSigners(LAST_ROLE_ARN_PREFIX + "embulk-another"));
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long uncachedCount(final CredentialsMetrics metrics) {
+        return metrics.getGetCredentialsCount() - metrics.getCachedCount();
+    }
+
+    private AwsCredentialsTask chainTask(final String roleName, final Optional<String> cacheDir) {
+        final Map<String, Object> hop = new HashMap<>();
+        hop.put("account_id", "111111111111");
+        hop.put("role_name", "embulk-first");
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "assume_role");
+        values.put("account_id", "000000000000");
+        values.put("role_name", roleName);
+        values.put("role_chain", Collections.singletonList(hop));
+        values.put("sts_endpoint", this.server.getStsEndpoint());
+        cacheDir.ifPresent(dir -> values.put("credentials_cache_dir", dir));
+        return TestTasks.of(values);
+    }
+
+    private AwsCredentialsTask task(final String refreshMode) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "assume_role");
+        values.put("account_id", "000000000000");
+        values.put("role_name", "embulk-local");
+        values.put("sts_endpoint", this.server.getStsEndpoint());
+        values.put("refresh_mode", refreshMode);
+        values.put("refresh_ahead_seconds", 300);
+        values.put("refresh_jitter_seconds", 0);
+        return TestTasks.of(values);
+    }
+
+    private static final String LATE_CALLER = "embulk-aws-credentials-test-late-caller";
+
+    // The metrics of the providers of task(), shared among the tests.
+    private static final CredentialsMetrics METRICS = CredentialsMetrics.of("AssumeRole arn:aws:iam::000000000000:role/embulk-local");
+
+    private static final String FIRST_HOP_ARN = "arn:aws:iam::111111111111:role/embulk-first";
+    private static final String LAST_ROLE_ARN_PREFIX = "arn:aws:iam::000000000000:role/";
+
+    private LocalCredentialsServer server;
+
+    @TempDir
+    Path directory;
+}
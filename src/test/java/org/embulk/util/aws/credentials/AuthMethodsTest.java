@@ -0,0 +1,49 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.embulk.config.ConfigException;
+import org.junit.jupiter.api.Test;
+
+public class AuthMethodsTest {
+    @Test
+    public void testRegisteredMethodsAreLoadable() {
+        for (final String name : AuthMethods.names()) {
+            assertTrue(AuthMethods.isAvailable(name), name);
+            assertNotNull(AuthMethods.get("", name).getAcceptedOptions(), name);
+        }
+    }
+
+    @Test
+    public void testUnknownMethodListsSupportedMethods() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "unknown");
+        final ConfigException ex = assertThrows(ConfigException.class, () -> AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values)));
+        assertEquals("Unknown auth_method 'unknown'. Supported methods are basic, env, instance, container, profile, "
+                + "credential_process, properties, anonymous, session, assume_role, web_identity, default and agent.", ex.getMessage());
+    }
+
+    @Test
+    public void testOptionsOfOtherMethodsAreRejected() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "instance");
+        values.put("role_name", "ingest");
+        final ConfigException ex = assertThrows(ConfigException.class, () -> AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values)));
+        assertEquals("Invalid option is set: role_name", ex.getMessage());
+    }
+
+    @Test
+    public void testOptionsOfOtherMethodsAreRejectedForAgentSource() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "agent");
+        values.put("agent_source_auth_method", "instance");
+        values.put("role_name", "ingest");
+        final ConfigException ex = assertThrows(ConfigException.class, () -> AwsCredentials.getAWSCredentialsProvider(TestTasks.of(values)));
+        assertEquals("Invalid option is set: role_name", ex.getMessage());
+    }
+}
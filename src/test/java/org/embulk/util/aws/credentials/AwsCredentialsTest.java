@@ -0,0 +1,144 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.TaskSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AwsCredentialsTest {
+    @BeforeEach
+    public void startInstanceMetadataService() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/latest/meta-data/iam/security-credentials", exchange -> {
+            final String body;
+            if (exchange.getRequestURI().getPath().matches(".*/security-credentials/?")) {
+                body = "test-role";
+            } else {
+                final int call = this.credentialsCalls.incrementAndGet();
+                body = "{\"Code\":\"Success\",\"AccessKeyId\":\"ASIA" + call + "\",\"SecretAccessKey\":\"secret" + call
+                        + "\",\"Token\":\"token" + call + "\",\"Expiration\":\"" + Instant.now().plus(1, ChronoUnit.HOURS) + "\"}";
+            }
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (final OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        });
+        this.server.start();
+        this.endpoint = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopInstanceMetadataService() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testPropagatedCredentialsNotConfigurable() throws IOException {
+        final ConfigSource config = this.instanceConfig()
+                .set("propagated_credentials", FACTORY.newConfigSource()
+                        .set("access_key_id", "AKID")
+                        .set("secret_access_key", "secret")
+                        .set("session_token", "token"));
+        final TestTask task = FACTORY.createConfigMapper().map(config, TestTask.class);
+
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(task);
+        try {
+            assertEquals("ASIA1", provider.getCredentials().getAWSAccessKeyId());
+        } finally {
+            ((Closeable) provider).close();
+        }
+    }
+
+    @Test
+    public void testPropagatesCredentialsThroughTask() throws IOException {
+        final TestTask coordinatorTask = FACTORY.createConfigMapper().map(this.instanceConfig(), TestTask.class);
+        AwsCredentials.propagateCredentials(coordinatorTask);
+        assertTrue(coordinatorTask.getPropagatedCredentials().isPresent());
+        assertEquals(1, this.credentialsCalls.get());
+
+        // Workers rebuild the task from TaskSource shipped from the coordinator.
+        final TaskSource taskSource = coordinatorTask.toTaskSource();
+        final TestTask workerTask = FACTORY.createTaskMapper().map(taskSource, TestTask.class);
+        assertEquals(coordinatorTask.getPropagatedCredentials(), workerTask.getPropagatedCredentials());
+
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(workerTask);
+        try {
+            final AWSCredentials credentials = provider.getCredentials();
+            assertEquals("ASIA1", credentials.getAWSAccessKeyId());
+            assertEquals("secret1", credentials.getAWSSecretKey());
+            assertEquals("token1", ((AWSSessionCredentials) credentials).getSessionToken());
+        } finally {
+            ((Closeable) provider).close();
+        }
+        // The worker has not called the instance metadata service by itself.
+        assertEquals(1, this.credentialsCalls.get());
+    }
+
+    @Test
+    public void testInstanceMetadataServiceIgnoresProxies() throws IOException {
+        final String proxyHost = System.getProperty("http.proxyHost");
+        final String proxyPort = System.getProperty("http.proxyPort");
+        final String nonProxyHosts = System.getProperty("http.nonProxyHosts");
+        // Nothing listens on the proxy. The default http.nonProxyHosts excludes localhost, so it is cleared.
+        System.setProperty("http.proxyHost", "127.0.0.1");
+        System.setProperty("http.proxyPort", "9");
+        System.setProperty("http.nonProxyHosts", "");
+        try {
+            final TestTask task = FACTORY.createConfigMapper().map(this.instanceConfig(), TestTask.class);
+            final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(task);
+            try {
+                assertEquals("ASIA1", provider.getCredentials().getAWSAccessKeyId());
+            } finally {
+                ((Closeable) provider).close();
+            }
+        } finally {
+            restoreProperty("http.proxyHost", proxyHost);
+            restoreProperty("http.proxyPort", proxyPort);
+            restoreProperty("http.nonProxyHosts", nonProxyHosts);
+        }
+    }
+
+    private ConfigSource instanceConfig() {
+        return FACTORY.newConfigSource()
+                .set("auth_method", "instance")
+                .set("instance_metadata_endpoint", this.endpoint)
+                .set("metadata_max_retries", 0);
+    }
+
+    private static void restoreProperty(final String name, final String value) {
+        if (value == null) {
+            System.clearProperty(name);
+        } else {
+            System.setProperty(name, value);
+        }
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private static final ConfigMapperFactory FACTORY = ConfigMapperFactory.withDefault();
+
+    private final AtomicInteger credentialsCalls = new AtomicInteger();
+
+    private HttpServer server;
+    private String endpoint;
+}
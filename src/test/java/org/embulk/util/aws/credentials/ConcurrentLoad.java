@@ -0,0 +1,166 @@
+package org.embulk.util.aws.credentials;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives many threads through a call at once, and records the latency of every call.
+ *
+ * <p>Latencies are recorded in a histogram of buckets which are at most 25% wide, because a timed run may make millions of
+ * calls. Percentiles are the upper bounds of their buckets.
+ */
+final class ConcurrentLoad {
+    private ConcurrentLoad(final long[] histogram, final long maxNanos, final long failures, final RuntimeException firstFailure) {
+        this.histogram = histogram;
+        this.maxNanos = maxNanos;
+        this.failures = failures;
+        this.firstFailure = firstFailure;
+        long calls = 0;
+        for (final long count : histogram) {
+            calls += count;
+        }
+        this.calls = calls;
+    }
+
+    /**
+     * Runs {@code call} {@code callsPerThread} times in each of {@code threads} threads, which start together.
+     */
+    static ConcurrentLoad run(final int threads, final int callsPerThread, final Runnable call) throws InterruptedException {
+        return drive(threads, (calls, startedNanos) -> calls < callsPerThread, call);
+    }
+
+    /**
+     * Runs {@code call} repeatedly in each of {@code threads} threads, which start together, until {@code duration} passes.
+     */
+    static ConcurrentLoad runFor(final int threads, final Duration duration, final Runnable call) throws InterruptedException {
+        return drive(threads, (calls, startedNanos) -> System.nanoTime() - startedNanos < duration.toNanos(), call);
+    }
+
+    long getCalls() {
+        return this.calls;
+    }
+
+    long getFailures() {
+        return this.failures;
+    }
+
+    RuntimeException getFirstFailure() {
+        return this.firstFailure;
+    }
+
+    /**
+     * Returns the latency at the percentile, such as {@code 99.0} for p99.
+     */
+    Duration getPercentile(final double percentile) {
+        final long rank = Math.max(1L, (long) Math.ceil(this.calls * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < this.histogram.length; bucket++) {
+            seen += this.histogram[bucket];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(upperBound(bucket), this.maxNanos));
+            }
+        }
+        return this.getMax();
+    }
+
+    Duration getMax() {
+        return Duration.ofNanos(this.maxNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentLoad{calls=" + this.calls + ", failures=" + this.failures
+                + ", p50=" + this.getPercentile(50.0) + ", p99=" + this.getPercentile(99.0) + ", max=" + this.getMax() + "}";
+    }
+
+    private interface Condition {
+        boolean test(long calls, long startedNanos);
+    }
+
+    private static ConcurrentLoad drive(final int threads, final Condition condition, final Runnable call) throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[][] histograms = new long[threads][BUCKETS];
+        final long[] maxNanos = new long[threads];
+        final AtomicLong failures = new AtomicLong();
+        final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        final List<Thread> workers = new ArrayList<>(threads);
+        final long[] startedNanos = new long[1];  // Published to the workers by the latch.
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            final Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long calls = 0; condition.test(calls, startedNanos[0]); calls++) {
+                    final long callStartedNanos = System.nanoTime();
+                    try {
+                        call.run();
+                    } catch (final RuntimeException ex) {
+                        failures.incrementAndGet();
+                        firstFailure.compareAndSet(null, ex);
+                    }
+                    final long latency = System.nanoTime() - callStartedNanos;
+                    histograms[index][bucketOf(latency)]++;
+                    maxNanos[index] = Math.max(maxNanos[index], latency);
+                }
+            }, "embulk-aws-credentials-load-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        startedNanos[0] = System.nanoTime();
+        start.countDown();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+
+        final long[] histogram = new long[BUCKETS];
+        long max = 0;
+        for (int i = 0; i < threads; i++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                histogram[bucket] += histograms[i][bucket];
+            }
+            max = Math.max(max, maxNanos[i]);
+        }
+        return new ConcurrentLoad(histogram, max, failures.get(), firstFailure.get());
+    }
+
+    // Each power of two is split into SUB_BUCKETS linear buckets.
+    private static int bucketOf(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0L, nanos);
+        }
+        final int log2 = 63 - Long.numberOfLeadingZeros(nanos);
+        final int sub = (int) (nanos >>> (log2 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (log2 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int log2 = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (log2 - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] histogram;
+    private final long maxNanos;
+    private final long calls;
+    private final long failures;
+    private final RuntimeException firstFailure;
+}
@@ -0,0 +1,143 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ContainerCredentialsProviderTest {
+    @BeforeEach
+    public void startContainerEndpoint() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/v2/credentials", exchange -> {
+            this.authorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+            final int call = this.authorizations.size();
+            // Expires within the refresh window so that every refresh fetches again.
+            final String body = "{\"AccessKeyId\":\"ASIA" + call + "\",\"SecretAccessKey\":\"secret" + call + "\",\"Token\":\"token" + call
+                    + "\",\"Expiration\":\"" + Instant.now().plus(2, ChronoUnit.MINUTES) + "\"}";
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (final OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        });
+        this.server.start();
+        this.endpoint = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/v2/credentials";
+    }
+
+    @AfterEach
+    public void stopContainerEndpoint() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testResolvesRelativeUri() {
+        assertEquals(Optional.of("http://169.254.170.2/v2/credentials/abc"), ContainerCredentialsProvider.resolveEndpoint(
+                environment(ContainerCredentialsProvider.RELATIVE_URI_ENVIRONMENT_VARIABLE, "/v2/credentials/abc")::get));
+        assertEquals(Optional.empty(), ContainerCredentialsProvider.resolveEndpoint(environment()::get));
+    }
+
+    @Test
+    public void testAcceptsAllowedFullUris() {
+        for (final String fullUri : Arrays.asList(
+                "https://credentials.example.com/v1",
+                "http://127.0.0.1:8080/v1",
+                "http://localhost/v1",
+                "http://169.254.170.2/v1",
+                "http://169.254.170.23/v1/credentials",
+                "http://[fd00:ec2::23]/v1/credentials")) {
+            assertEquals(Optional.of(fullUri), ContainerCredentialsProvider.resolveEndpoint(
+                    environment(ContainerCredentialsProvider.FULL_URI_ENVIRONMENT_VARIABLE, fullUri)::get));
+        }
+    }
+
+    @Test
+    public void testRejectsPlainHttpFullUriToNonLoopback() {
+        for (final String fullUri : Arrays.asList("http://192.0.2.1/v1", "http://169.254.169.254/v1", "ftp://127.0.0.1/v1")) {
+            assertThrows(SdkClientException.class, () -> ContainerCredentialsProvider.resolveEndpoint(
+                    environment(ContainerCredentialsProvider.FULL_URI_ENVIRONMENT_VARIABLE, fullUri)::get));
+        }
+    }
+
+    @Test
+    public void testFetchesFromEndpoint() {
+        final ContainerCredentialsProvider provider = this.provider(environment());
+        final AWSSessionCredentials credentials = (AWSSessionCredentials) provider.getCredentials();
+        assertEquals("ASIA1", credentials.getAWSAccessKeyId());
+        assertEquals("secret1", credentials.getAWSSecretKey());
+        assertEquals("token1", credentials.getSessionToken());
+        assertEquals(Collections.singletonList("null"), this.authorizations);
+    }
+
+    @Test
+    public void testSendsAuthorizationToken() {
+        final ContainerCredentialsProvider provider = this.provider(
+                environment(ContainerCredentialsProvider.AUTHORIZATION_TOKEN_ENVIRONMENT_VARIABLE, "env-token"));
+        provider.getCredentials();
+        assertEquals(Collections.singletonList("env-token"), this.authorizations);
+    }
+
+    @Test
+    public void testSendsAuthorizationTokenFileReadOnEveryFetch() throws IOException {
+        final Path tokenFile = this.directory.resolve("token");
+        Files.write(tokenFile, "first-token\n".getBytes(StandardCharsets.UTF_8));
+        final ContainerCredentialsProvider provider = this.provider(environment(
+                ContainerCredentialsProvider.AUTHORIZATION_TOKEN_FILE_ENVIRONMENT_VARIABLE, tokenFile.toString(),
+                ContainerCredentialsProvider.AUTHORIZATION_TOKEN_ENVIRONMENT_VARIABLE, "env-token"));
+        provider.getCredentials();
+
+        Files.write(tokenFile, "second-token\n".getBytes(StandardCharsets.UTF_8));
+        provider.refresh();
+        assertEquals(Arrays.asList("first-token", "second-token"), this.authorizations);
+    }
+
+    private ContainerCredentialsProvider provider(final Map<String, String> environment) {
+        final ConfigMapperFactory factory = ConfigMapperFactory.withDefault();
+        final TestTask task = factory.createConfigMapper().map(factory.newConfigSource(), TestTask.class);
+        // The endpoint is unique per test so that credentials shared per endpoint do not leak between tests.
+        return new ContainerCredentialsProvider(
+                this.endpoint, new MetadataHttpClient(1000, 1000, 0), RefreshSettings.of(task, ""), environment::get);
+    }
+
+    private static Map<String, String> environment(final String... namesAndValues) {
+        final HashMap<String, String> environment = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            environment.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return environment;
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private final List<String> authorizations = Collections.synchronizedList(new ArrayList<>());
+
+    private HttpServer server;
+    private String endpoint;
+
+    @TempDir
+    Path directory;
+}
@@ -0,0 +1,125 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CredentialsMetricsTest {
+    @BeforeEach
+    public void startServer() throws IOException {
+        // The STS client signs AssumeRole with DefaultAWSCredentialsProviderChain.
+        System.setProperty("aws.accessKeyId", "AKIALOCALCALLER");
+        System.setProperty("aws.secretKey", "local-caller-secret-access-key");
+        this.server = LocalCredentialsServer.start(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        AwsCredentials.setMetrics(null);
+        this.server.close();
+        System.clearProperty("aws.accessKeyId");
+        System.clearProperty("aws.secretKey");
+    }
+
+    @Test
+    public void testCountsCachedCallsAndRefreshes() throws Exception {
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("embulk-metrics-counts", false));
+        try (final Closeable closing = (Closeable) provider) {
+            for (int i = 0; i < 10; i++) {
+                provider.getCredentials();
+            }
+        }
+
+        final CredentialsMetrics metrics = CredentialsMetrics.of("AssumeRole arn:aws:iam::000000000000:role/embulk-metrics-counts");
+        assertEquals(10, metrics.getGetCredentialsCount());
+        assertEquals(9, metrics.getCachedCount());
+        assertEquals(1, metrics.getRefreshCount());
+        assertEquals(0, metrics.getFailureCount());
+        assertTrue(metrics.getTimeToExpiry().get().compareTo(Duration.ofMinutes(50)) > 0, metrics::summarize);
+        assertTrue(CredentialsMetrics.listUsed().contains(metrics));
+    }
+
+    @Test
+    public void testRecordsFailuresByCause() throws Exception {
+        this.server.throttle(LocalCredentialsServer.Api.ASSUME_ROLE, 100);
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("embulk-metrics-failures", false));
+        try (final Closeable closing = (Closeable) provider) {
+            assertThrows(SdkClientException.class, provider::getCredentials);
+        }
+
+        final CredentialsMetrics metrics = CredentialsMetrics.of("AssumeRole arn:aws:iam::000000000000:role/embulk-metrics-failures");
+        assertEquals(0, metrics.getRefreshCount());
+        assertEquals(1, metrics.getFailureCount());
+        assertEquals(Long.valueOf(1), metrics.getFailures().get("Throttling"));
+    }
+
+    @Test
+    public void testForwardsToSink() throws Exception {
+        final List<String> records = Collections.synchronizedList(new ArrayList<>());
+        AwsCredentials.setMetrics(new AwsCredentialsMetrics() {
+            @Override
+            public void recordGetCredentials(final String provider, final boolean cached) {
+                records.add("get " + provider + " " + cached);
+            }
+
+            @Override
+            public void recordRefresh(final String provider, final Duration latency, final Optional<Duration> timeToExpiry) {
+                records.add("refresh " + provider + " " + timeToExpiry.isPresent());
+            }
+        });
+
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("embulk-metrics-sink", false));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            provider.getCredentials();
+        }
+
+        final String description = "AssumeRole arn:aws:iam::000000000000:role/embulk-metrics-sink";
+        assertTrue(records.contains("refresh " + description + " true"), records::toString);
+        assertTrue(records.contains("get " + description + " false"), records::toString);
+        assertTrue(records.contains("get " + description + " true"), records::toString);
+    }
+
+    @Test
+    public void testRegistersMBean() throws Exception {
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("embulk-metrics-jmx", true));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+        }
+
+        final ObjectName name = new ObjectName(CredentialsMetrics.JMX_DOMAIN + ":type=CredentialsProvider,name="
+                + ObjectName.quote("AssumeRole arn:aws:iam::000000000000:role/embulk-metrics-jmx"));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "GetCredentialsCount"));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RefreshCount"));
+        assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FailureCount"));
+    }
+
+    private AwsCredentialsTask task(final String roleName, final boolean jmx) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "assume_role");
+        values.put("account_id", "000000000000");
+        values.put("role_name", roleName);
+        values.put("sts_endpoint", this.server.getStsEndpoint());
+        values.put("metrics_jmx", jmx);
+        return TestTasks.of(values);
+    }
+
+    private LocalCredentialsServer server;
+}
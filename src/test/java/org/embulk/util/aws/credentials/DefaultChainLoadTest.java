@@ -0,0 +1,132 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.profile.path.AwsProfileFileLocationProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DefaultChainLoadTest {
+    @BeforeEach
+    public void startServer() throws IOException {
+        // The chain must reach the instance metadata service through the local sources.
+        assumeTrue(System.getenv("AWS_ACCESS_KEY_ID") == null, "AWS_ACCESS_KEY_ID is set.");
+        assumeTrue(System.getenv("AWS_WEB_IDENTITY_TOKEN_FILE") == null, "AWS_WEB_IDENTITY_TOKEN_FILE is set.");
+        assumeTrue(!ContainerCredentialsProvider.resolveEndpoint().isPresent(), "A container credentials endpoint is set.");
+        assumeTrue(AwsProfileFileLocationProvider.DEFAULT_CREDENTIALS_LOCATION_PROVIDER.getLocation() == null,
+                "An AWS credentials profile file exists.");
+        System.clearProperty("aws.accessKeyId");
+        System.clearProperty("aws.secretKey");
+        this.server = LocalCredentialsServer.start(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testColdStartFetchesOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(100));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task());
+        try (final Closeable closing = (Closeable) provider) {
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 1, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testSharedProvidersFetchOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(100));
+        try (final SharedAwsCredentialsProvider holder = AwsCredentials.getSharedAWSCredentialsProvider(this.task())) {
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 10, () -> {
+                try (final SharedAwsCredentialsProvider shared = AwsCredentials.getSharedAWSCredentialsProvider(this.task())) {
+                    shared.getCredentials();
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testNoRefreshStormInSyncMode() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task());
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLatency(Duration.ofMillis(100));
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testWinnerOfAnotherConfigurationDoesNotPrecedePriorSources() throws Exception {
+        final AWSCredentialsProvider fromInstance = AwsCredentials.getAWSCredentialsProvider(this.task());
+        try (final Closeable closing = (Closeable) fromInstance) {
+            assertTrue(fromInstance.getCredentials().getAWSAccessKeyId().startsWith("ASIALOCAL"));
+        }
+
+        System.setProperty("aws.accessKeyId", "AKIALOCALPROPERTIES");
+        System.setProperty("aws.secretKey", "local-properties-secret-access-key");
+        try {
+            final AwsCredentialsTask another = this.task();
+            another.setRefreshAheadSeconds(600);
+            final AWSCredentialsProvider fromProperties = AwsCredentials.getAWSCredentialsProvider(another);
+            try (final Closeable closing = (Closeable) fromProperties) {
+                assertEquals("AKIALOCALPROPERTIES", fromProperties.getCredentials().getAWSAccessKeyId());
+            }
+        } finally {
+            System.clearProperty("aws.accessKeyId");
+            System.clearProperty("aws.secretKey");
+        }
+    }
+
+    @Test
+    public void testAsyncRefreshingProviderPrefetchesDefaultChain() throws Exception {
+        try (final AsyncRefreshingAwsCredentialsProvider provider = AwsCredentials.getAsyncRefreshingAWSCredentialsProvider(this.task())) {
+            provider.prefetch();
+            provider.prefetch();
+
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS) < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // Loaded without any request.
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+
+            assertTrue(provider.getCredentials().getAWSAccessKeyId().startsWith("ASIALOCAL"));
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    private AwsCredentialsTask task() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "default");
+        values.put("instance_metadata_endpoint", this.server.getInstanceMetadataEndpoint());
+        values.put("refresh_mode", "sync");
+        values.put("refresh_ahead_seconds", 300);
+        values.put("refresh_jitter_seconds", 0);
+        return TestTasks.of(values);
+    }
+
+    private LocalCredentialsServer server;
+}
@@ -0,0 +1,161 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.amazonaws.auth.AWSSessionCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileCredentialsCacheTest {
+    @Test
+    public void testReadsWhatIsWritten() {
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory.resolve("cache"));
+        final Instant expiration = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        cache.write("key", credentials("AKID", expiration));
+
+        final ExpiringCredentials read = cache.read("key").get();
+        assertEquals("AKID", read.getCredentials().getAWSAccessKeyId());
+        assertEquals("secret-AKID", read.getCredentials().getAWSSecretKey());
+        assertEquals("token-AKID", ((AWSSessionCredentials) read.getCredentials()).getSessionToken());
+        assertEquals(Optional.of(expiration), read.getExpiration());
+        assertFalse(cache.read("other").isPresent());
+    }
+
+    @Test
+    public void testKeyDependsOnEveryPart() {
+        assertEquals(FileCredentialsCache.key("a", "b"), FileCredentialsCache.key("a", "b"));
+        assertFalse(FileCredentialsCache.key("a", "b").equals(FileCredentialsCache.key("a", "c")));
+        assertFalse(FileCredentialsCache.key("a", "b").equals(FileCredentialsCache.key("ab")));
+    }
+
+    @Test
+    public void testFilesAreOwnerOnly() throws Exception {
+        assumeTrue(this.directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        final Path cacheDirectory = this.directory.resolve("cache");
+        new FileCredentialsCache(cacheDirectory).write("key", credentials("AKID", Instant.now().plus(1, ChronoUnit.HOURS)));
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDirectory)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDirectory.resolve("key.json"))));
+    }
+
+    @Test
+    public void testIgnoresBrokenFile() throws Exception {
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+        Files.write(this.directory.resolve("key.json"), "{\"Credentials\":{\"AccessKeyId\":\"AKID\"".getBytes("UTF-8"));
+        assertFalse(cache.read("key").isPresent());
+    }
+
+    @Test
+    public void testReplacesAtomically() throws Exception {
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+        final Instant expiration = Instant.now().plus(1, ChronoUnit.HOURS);
+        cache.write("key", credentials("AKID0", expiration));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final String accessKeyId = "AKID" + i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        cache.write("key", credentials(accessKeyId, expiration));
+                    }
+                }));
+            }
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        // A reader always sees a complete entry, never a partially-written one.
+                        final ExpiringCredentials read = cache.read("key").get();
+                        final String accessKeyId = read.getCredentials().getAWSAccessKeyId();
+                        assertEquals("secret-" + accessKeyId, read.getCredentials().getAWSSecretKey());
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (final Stream<Path> files = Files.list(this.directory)) {
+            assertTrue(files.allMatch(file -> file.getFileName().toString().equals("key.json")));
+        }
+    }
+
+    @Test
+    public void testLockIsExclusiveAmongProcesses() throws Exception {
+        final FileCredentialsCache cache = new FileCredentialsCache(this.directory);
+        final Process child = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                LockHolder.class.getName(), this.directory.toString(), "key", "500")
+                .redirectErrorStream(true)
+                .start();
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+            final StringBuilder output = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null && !"locked".equals(line)) {
+                output.append(line).append('\n');
+            }
+            assertEquals("locked", line, output::toString);
+
+            // The other process writes its credentials right before unlocking. They are there once this process has locked.
+            final Optional<ExpiringCredentials> read = cache.withLock("key", () -> cache.read("key"));
+            assertEquals("AKIDCHILD", read.get().getCredentials().getAWSAccessKeyId());
+            assertEquals(0, child.waitFor());
+        } finally {
+            child.destroyForcibly();
+        }
+    }
+
+    /**
+     * Locks an entry in another process, and writes credentials into the entry before unlocking.
+     */
+    public static final class LockHolder {
+        public static void main(final String[] args) {
+            final FileCredentialsCache cache = new FileCredentialsCache(Paths.get(args[0]));
+            cache.withLock(args[1], () -> {
+                System.out.println("locked");
+                System.out.flush();
+                try {
+                    Thread.sleep(Long.parseLong(args[2]));
+                } catch (final InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                cache.write(args[1], credentials("AKIDCHILD", Instant.now().plus(1, ChronoUnit.HOURS)));
+                return null;
+            });
+        }
+    }
+
+    private static ExpiringCredentials credentials(final String accessKeyId, final Instant expiration) {
+        return new ExpiringCredentials(
+                new BasicSessionCredentials(accessKeyId, "secret-" + accessKeyId, "token-" + accessKeyId), Optional.of(expiration));
+    }
+
+    @TempDir
+    Path directory;
+}
@@ -0,0 +1,250 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class InstanceMetadataLoadTest {
+    @BeforeEach
+    public void startServer() throws IOException {
+        this.server = LocalCredentialsServer.start(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        this.server.close();
+    }
+
+    @Test
+    public void testColdStartFetchesOnce() throws Exception {
+        this.server.setLatency(Duration.ofMillis(100));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", false));
+        try (final Closeable closing = (Closeable) provider) {
+            final ConcurrentLoad load = ConcurrentLoad.run(300, 1, provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_TOKEN));
+            assertEquals(1, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testNoRefreshStormInSyncMode() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", false));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setLatency(Duration.ofMillis(100));
+            final CredentialsMetrics metrics = CredentialsMetrics.of("EC2 instance metadata " + this.server.getInstanceMetadataEndpoint());
+            final long callsBefore = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS);
+            final long tokensBefore = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_TOKEN);
+            final long uncachedBefore = metrics.getGetCredentialsCount() - metrics.getCachedCount();
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), provider::getCredentials);
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            final long calls = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS) - callsBefore;
+            assertTrue(calls > 0);
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+            // The session token is reused among refreshes.
+            assertEquals(tokensBefore, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_TOKEN));
+            // Only the callers which refreshed waited for the service. The others got the current credentials meanwhile.
+            final long uncached = metrics.getGetCredentialsCount() - metrics.getCachedCount() - uncachedBefore;
+            assertTrue(uncached <= calls, () -> uncached + " callers waited for " + calls + " refreshes: " + load);
+        }
+    }
+
+    @Test
+    public void testThrottlingKeepsCurrentCredentials() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", false));
+        try (final Closeable closing = (Closeable) provider) {
+            final String current = provider.getCredentials().getAWSAccessKeyId();
+            this.server.throttle(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS, Integer.MAX_VALUE);
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), () -> {
+                if (!current.equals(provider.getCredentials().getAWSAccessKeyId())) {
+                    throw new IllegalStateException("Credentials changed while throttled.");
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testOutageKeepsCurrentCredentials() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(120));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", false));
+        try (final Closeable closing = (Closeable) provider) {
+            final String current = provider.getCredentials().getAWSAccessKeyId();
+            this.server.setOutage(true);
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(200, Duration.ofSeconds(2), () -> {
+                if (!current.equals(provider.getCredentials().getAWSAccessKeyId())) {
+                    throw new IllegalStateException("Credentials changed during the outage.");
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        }
+    }
+
+    @Test
+    public void testOutageCloseToExpiringFailsByDefault() throws Exception {
+        // The credentials expire within RefreshableCredentialsProvider.BLOCKING_REFRESH_MARGIN from the beginning.
+        this.server.setLifetime(Duration.ofSeconds(30));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", false));
+        try (final Closeable closing = (Closeable) provider) {
+            provider.getCredentials();
+            this.server.setOutage(true);
+
+            assertThrows(SdkClientException.class, provider::getCredentials);
+        }
+    }
+
+    @Test
+    public void testStaleWhileRevalidateInSyncMode() throws Exception {
+        this.server.setLifetime(Duration.ofSeconds(30));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("sync", true));
+        try (final Closeable closing = (Closeable) provider) {
+            final String current = provider.getCredentials().getAWSAccessKeyId();
+            final long calls = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS);
+            this.server.setOutage(true);
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(100, Duration.ofSeconds(2), () -> {
+                if (!current.equals(provider.getCredentials().getAWSAccessKeyId())) {
+                    throw new IllegalStateException("Credentials changed during the outage.");
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            // One requesting thread at a time has retried the refresh.
+            assertTrue(this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS) > calls);
+            assertEquals(1, this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+
+            this.server.setOutage(false);
+            assertNotEquals(current, provider.getCredentials().getAWSAccessKeyId());
+        }
+    }
+
+    @Test
+    public void testStaleWhileRevalidateInAsyncMode() throws Exception {
+        // The background thread refreshes the credentials halfway, in 5 seconds.
+        this.server.setLifetime(Duration.ofSeconds(10));
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(this.task("async", true));
+        try (final Closeable closing = (Closeable) provider) {
+            final String current = provider.getCredentials().getAWSAccessKeyId();
+            final long calls = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS);
+            this.server.setOutage(true);
+
+            final ConcurrentLoad load = ConcurrentLoad.runFor(100, Duration.ofSeconds(2), () -> {
+                if (!current.equals(provider.getCredentials().getAWSAccessKeyId())) {
+                    throw new IllegalStateException("Credentials changed during the outage.");
+                }
+            });
+
+            assertEquals(0, load.getFailures(), () -> "First failure: " + load.getFirstFailure());
+            // No requesting thread has waited for a refresh.
+            assertEquals(calls, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+
+            this.server.setOutage(false);
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            String recovered = provider.getCredentials().getAWSAccessKeyId();
+            while (current.equals(recovered) && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+                recovered = provider.getCredentials().getAWSAccessKeyId();
+            }
+            assertNotEquals(current, recovered);
+        }
+    }
+
+    @Test
+    public void testUnreachableAsyncProviderStopsRefreshing() throws Exception {
+        // The background thread would refresh the credentials halfway, every 2 seconds or less.
+        this.server.setLifetime(Duration.ofSeconds(4));
+        final WeakReference<AWSCredentialsProvider> dropped = this.getCredentialsAndDrop(this.task("async", false));
+
+        final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (dropped.get() != null && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertTrue(dropped.get() == null, "The provider dropped is still reachable.");
+
+        final long calls = this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS);
+        Thread.sleep(3000);
+        assertEquals(calls, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+    }
+
+    @Test
+    public void testBatchResolvesConcurrentlyAndDeduplicates() throws Exception {
+        this.server.setLatency(Duration.ofMillis(500));
+        final List<AwsCredentialsTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // Four distinct configurations, each of which is requested twice.
+            final AwsCredentialsTask task = this.task("sync", false);
+            task.setRefreshAheadSeconds(300 + i);
+            tasks.add(task);
+            tasks.add(task);
+        }
+
+        final List<CompletableFuture<SharedAwsCredentialsProvider>> futures = AwsCredentials.getSharedAWSCredentialsProvidersAsync(tasks);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        for (final CompletableFuture<SharedAwsCredentialsProvider> future : futures) {
+            future.join().close();
+        }
+        assertEquals(4, this.server.getCalls(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS));
+        // Resolved concurrently, not one after another.
+        assertTrue(this.server.getMaxConcurrency(LocalCredentialsServer.Api.INSTANCE_METADATA_CREDENTIALS) > 1);
+    }
+
+    @Test
+    public void testAsyncReportsFailureInFuture() {
+        this.server.setOutage(true);
+        final CompletableFuture<SharedAwsCredentialsProvider> future =
+                AwsCredentials.getSharedAWSCredentialsProviderAsync(this.task("sync", false));
+        final CompletionException ex = assertThrows(CompletionException.class, future::join);
+        assertTrue(ex.getCause() instanceof SdkClientException, ex::toString);
+    }
+
+    // Not closed, as plugins do with AwsCredentials#getAWSCredentialsProvider.
+    private WeakReference<AWSCredentialsProvider> getCredentialsAndDrop(final AwsCredentialsTask task) {
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(task);
+        provider.getCredentials();
+        return new WeakReference<>(provider);
+    }
+
+    private AwsCredentialsTask task(final String refreshMode, final boolean staleWhileRevalidate) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("auth_method", "instance");
+        values.put("instance_metadata_endpoint", this.server.getInstanceMetadataEndpoint());
+        values.put("refresh_mode", refreshMode);
+        values.put("refresh_ahead_seconds", 300);
+        values.put("refresh_jitter_seconds", 0);
+        values.put("stale_while_revalidate", staleWhileRevalidate);
+        return TestTasks.of(values);
+    }
+
+    private LocalCredentialsServer server;
+}
@@ -0,0 +1,328 @@
+package org.embulk.util.aws.credentials;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process emulator of STS, the EC2 instance metadata service, and the container credentials endpoint, so that tests
+ * and benchmarks run offline.
+ *
+ * <p>It issues dummy credentials which expire in a lifetime. Tests can set the lifetime, latency of responses, throttling
+ * errors, and outages at any time, and check the number of calls and the maximum concurrent calls per {@link Api}. It also
+ * records the access key ID which signed each {@code AssumeRole} call, per role ARN.
+ *
+ * <ul>
+ * <li>{@link #getStsEndpoint()} answers {@code AssumeRole} and {@code AssumeRoleWithWebIdentity} on {@code POST /sts}.
+ * <li>{@link #getInstanceMetadataEndpoint()} answers IMDSv2 tokens and credentials of a role {@value #INSTANCE_ROLE_NAME}.
+ * <li>{@link #getContainerEndpoint()} answers credentials as Amazon ECS does.
+ * </ul>
+ */
+final class LocalCredentialsServer implements Closeable {
+    enum Api {
+        ASSUME_ROLE,
+        ASSUME_ROLE_WITH_WEB_IDENTITY,
+        INSTANCE_METADATA_TOKEN,
+        INSTANCE_METADATA_CREDENTIALS,
+        CONTAINER_CREDENTIALS;
+    }
+
+    private LocalCredentialsServer(final HttpServer server, final ExecutorService executor, final Duration lifetime) {
+        this.server = server;
+        this.executor = executor;
+        this.lifetime = lifetime;
+        this.latency = Duration.ZERO;
+        this.outage = false;
+        this.issued = new AtomicLong();
+        this.calls = new EnumMap<>(Api.class);
+        this.inFlight = new EnumMap<>(Api.class);
+        this.maxConcurrency = new EnumMap<>(Api.class);
+        this.throttled = new EnumMap<>(Api.class);
+        this.assumeRoleSigners = new ConcurrentHashMap<>();
+        for (final Api api : Api.values()) {
+            this.calls.put(api, new AtomicLong());
+            this.inFlight.put(api, new AtomicInteger());
+            this.maxConcurrency.put(api, new AtomicInteger());
+            this.throttled.put(api, new AtomicInteger());
+        }
+    }
+
+    static LocalCredentialsServer start(final Duration lifetime) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "embulk-aws-credentials-local-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final LocalCredentialsServer stub = new LocalCredentialsServer(server, executor, lifetime);
+        server.createContext("/sts", stub::handleSts);
+        server.createContext("/latest/", stub::handleInstanceMetadata);
+        server.createContext("/container/", stub::handleContainer);
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    String getStsEndpoint() {
+        return this.getBaseUrl() + "/sts";
+    }
+
+    String getInstanceMetadataEndpoint() {
+        return this.getBaseUrl();
+    }
+
+    String getContainerEndpoint() {
+        return this.getBaseUrl() + "/container/credentials";
+    }
+
+    /**
+     * Sets the lifetime of credentials issued from now on.
+     */
+    void setLifetime(final Duration lifetime) {
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Sets the latency of every response from now on.
+     */
+    void setLatency(final Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Makes the next calls of the API fail with a throttling error: {@code Throttling} for STS, or HTTP 429 for the others.
+     */
+    void throttle(final Api api, final int count) {
+        this.throttled.get(api).set(count);
+    }
+
+    /**
+     * Makes every call fail with HTTP 503 while {@code outage} is {@code true}.
+     */
+    void setOutage(final boolean outage) {
+        this.outage = outage;
+    }
+
+    /**
+     * Returns the number of calls of the API so far, including failed ones.
+     */
+    long getCalls(final Api api) {
+        return this.calls.get(api).get();
+    }
+
+    /**
+     * Returns the maximum number of concurrent calls of the API so far.
+     */
+    int getMaxConcurrency(final Api api) {
+        return this.maxConcurrency.get(api).get();
+    }
+
+    /**
+     * Returns the number of credentials issued so far.
+     */
+    long getIssued() {
+        return this.issued.get();
+    }
+
+    /**
+     * Returns the access key IDs which signed {@code AssumeRole} calls of the role so far, in the order of the calls.
+     */
+    List<String> getAssumeRoleSigners(final String roleArn) {
+        final List<String> signers = this.assumeRoleSigners.get(roleArn);
+        if (signers == null) {
+            return Collections.emptyList();
+        }
+        synchronized (signers) {
+            return new ArrayList<>(signers);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private String getBaseUrl() {
+        return "http://" + this.server.getAddress().getAddress().getHostAddress() + ":" + this.server.getAddress().getPort();
+    }
+
+    private void handleSts(final HttpExchange exchange) throws IOException {
+        final String body = new String(readFully(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        final Api api;
+        final String action;
+        if (body.contains("Action=AssumeRoleWithWebIdentity")) {
+            api = Api.ASSUME_ROLE_WITH_WEB_IDENTITY;
+            action = "AssumeRoleWithWebIdentity";
+        } else if (body.contains("Action=AssumeRole")) {
+            api = Api.ASSUME_ROLE;
+            action = "AssumeRole";
+        } else {
+            respond(exchange, 400, "text/plain", "Unsupported action.");
+            return;
+        }
+        if (api == Api.ASSUME_ROLE) {
+            final List<String> signers = this.assumeRoleSigners.computeIfAbsent(parameter(body, "RoleArn"), key -> new ArrayList<>());
+            synchronized (signers) {
+                signers.add(signer(exchange.getRequestHeaders().getFirst("Authorization")));
+            }
+        }
+        this.call(exchange, api, () -> {
+            final long serial = this.issued.incrementAndGet();
+            return "<" + action + "Response xmlns=\"https://sts.amazonaws.com/doc/2011-06-15/\">"
+                    + "<" + action + "Result>"
+                    + "<Credentials>"
+                    + "<AccessKeyId>ASIALOCAL" + serial + "</AccessKeyId>"
+                    + "<SecretAccessKey>local-secret-access-key</SecretAccessKey>"
+                    + "<SessionToken>local-session-token</SessionToken>"
+                    + "<Expiration>" + this.expiration() + "</Expiration>"
+                    + "</Credentials>"
+                    + "<AssumedRoleUser><Arn>arn:aws:sts::000000000000:assumed-role/local/embulk</Arn>"
+                    + "<AssumedRoleId>AROALOCAL:embulk</AssumedRoleId></AssumedRoleUser>"
+                    + "</" + action + "Result>"
+                    + "<ResponseMetadata><RequestId>" + serial + "</RequestId></ResponseMetadata>"
+                    + "</" + action + "Response>";
+        });
+    }
+
+    private void handleInstanceMetadata(final HttpExchange exchange) throws IOException {
+        readFully(exchange.getRequestBody());
+        final String path = exchange.getRequestURI().getPath();
+        if ("PUT".equals(exchange.getRequestMethod()) && "/latest/api/token".equals(path)) {
+            this.call(exchange, Api.INSTANCE_METADATA_TOKEN, () -> "local-imds-token");
+        } else if ("/latest/meta-data/iam/security-credentials/".equals(path)) {
+            respond(exchange, 200, "text/plain", INSTANCE_ROLE_NAME);
+        } else if (("/latest/meta-data/iam/security-credentials/" + INSTANCE_ROLE_NAME).equals(path)) {
+            this.call(exchange, Api.INSTANCE_METADATA_CREDENTIALS, () -> this.credentialsJson(true));
+        } else {
+            respond(exchange, 404, "text/plain", "Not found.");
+        }
+    }
+
+    private void handleContainer(final HttpExchange exchange) throws IOException {
+        readFully(exchange.getRequestBody());
+        this.call(exchange, Api.CONTAINER_CREDENTIALS, () -> this.credentialsJson(false));
+    }
+
+    private void call(final HttpExchange exchange, final Api api, final Supplier<String> body) throws IOException {
+        this.calls.get(api).incrementAndGet();
+        final int concurrency = this.inFlight.get(api).incrementAndGet();
+        this.maxConcurrency.get(api).accumulateAndGet(concurrency, Math::max);
+        try {
+            Thread.sleep(this.latency.toMillis());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.inFlight.get(api).decrementAndGet();
+        }
+
+        final boolean sts = api == Api.ASSUME_ROLE || api == Api.ASSUME_ROLE_WITH_WEB_IDENTITY;
+        if (this.outage) {
+            respond(exchange, 503, "text/plain", "Service unavailable.");
+        } else if (this.throttled.get(api).getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+            if (sts) {
+                respond(exchange, 400, "text/xml", "<ErrorResponse xmlns=\"https://sts.amazonaws.com/doc/2011-06-15/\">"
+                        + "<Error><Type>Sender</Type><Code>Throttling</Code><Message>Rate exceeded</Message></Error>"
+                        + "<RequestId>throttled</RequestId>"
+                        + "</ErrorResponse>");
+            } else {
+                respond(exchange, 429, "text/plain", "Too many requests.");
+            }
+        } else {
+            respond(exchange, 200, sts ? "text/xml" : "application/json", body.get());
+        }
+    }
+
+    private String credentialsJson(final boolean withCode) {
+        final long serial = this.issued.incrementAndGet();
+        return "{"
+                + (withCode ? "\"Code\":\"Success\"," : "")
+                + "\"AccessKeyId\":\"ASIALOCAL" + serial + "\","
+                + "\"SecretAccessKey\":\"local-secret-access-key\","
+                + "\"Token\":\"local-session-token\","
+                + "\"Expiration\":\"" + this.expiration() + "\""
+                + "}";
+    }
+
+    private Instant expiration() {
+        return Instant.now().plus(this.lifetime).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private static String parameter(final String form, final String name) throws IOException {
+        for (final String pair : form.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    // "AWS4-HMAC-SHA256 Credential=<access key ID>/<date>/<region>/sts/aws4_request, SignedHeaders=..., Signature=..."
+    private static String signer(final String authorization) {
+        if (authorization == null) {
+            return "";
+        }
+        final Matcher matcher = CREDENTIAL_IN_AUTHORIZATION.matcher(authorization);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String contentType, final String body)
+            throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static byte[] readFully(final InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    static final String INSTANCE_ROLE_NAME = "embulk-local";
+
+    private static final Pattern CREDENTIAL_IN_AUTHORIZATION = Pattern.compile("Credential=([^/,\\s]+)/");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile Duration lifetime;
+    private volatile Duration latency;
+    private volatile boolean outage;
+    private final AtomicLong issued;
+    private final Map<Api, AtomicLong> calls;
+    private final Map<Api, AtomicInteger> inFlight;
+    private final Map<Api, AtomicInteger> maxConcurrency;
+    private final Map<Api, AtomicInteger> throttled;
+    private final Map<String, List<String>> assumeRoleSigners;
+}
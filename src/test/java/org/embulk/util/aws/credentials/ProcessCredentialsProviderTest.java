@@ -0,0 +1,99 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSSessionCredentials;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProcessCredentialsProviderTest {
+    @BeforeEach
+    public void requirePosixShell() {
+        assumeFalse(System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH).startsWith("windows"));
+    }
+
+    @Test
+    public void testParsesSessionCredentials() throws IOException {
+        final AWSCredentials credentials = this.provider(this.script("session.sh",
+                "echo '{\"Version\": 1, \"AccessKeyId\": \"ASIAPROCESS\", \"SecretAccessKey\": \"secret\", "
+                + "\"SessionToken\": \"token\", \"Expiration\": \"2099-01-01T00:00:00Z\"}'"))
+                .getCredentials();
+        assertEquals("ASIAPROCESS", credentials.getAWSAccessKeyId());
+        assertEquals("secret", credentials.getAWSSecretKey());
+        assertEquals("token", ((AWSSessionCredentials) credentials).getSessionToken());
+    }
+
+    @Test
+    public void testParsesLongTermCredentials() throws IOException {
+        final AWSCredentials credentials = this.provider(this.script("basic.sh",
+                "echo '{\"Version\": 1, \"AccessKeyId\": \"AKIAPROCESS\", \"SecretAccessKey\": \"secret\"}'"))
+                .getCredentials();
+        assertEquals("AKIAPROCESS", credentials.getAWSAccessKeyId());
+        assertFalse(credentials instanceof AWSSessionCredentials);
+    }
+
+    @Test
+    public void testRejectsInvalidOutput() throws IOException {
+        assertFailsWith("Unable to parse", this.script("broken.sh", "echo '{\"Version\": 1, \"AccessKeyId\": '"));
+        assertFailsWith("Unsupported Version", this.script("version.sh",
+                "echo '{\"Version\": 2, \"AccessKeyId\": \"AKIAPROCESS\", \"SecretAccessKey\": \"secret\"}'"));
+        assertFailsWith("No AccessKeyId", this.script("missing.sh", "echo '{\"Version\": 1, \"AccessKeyId\": \"AKIAPROCESS\"}'"));
+    }
+
+    @Test
+    public void testFailsOnNonZeroExit() throws IOException {
+        assertFailsWith("exited with 3", this.script("exit.sh",
+                "echo '{\"Version\": 1, \"AccessKeyId\": \"AKIAPROCESS\", \"SecretAccessKey\": \"secret\"}'",
+                "exit 3"));
+    }
+
+    @Test
+    public void testKillsHangingProcess() throws IOException {
+        final long startedNanos = System.nanoTime();
+        assertFailsWith("did not finish", this.script("hang.sh", "sleep 30"));
+        assertTrue(System.nanoTime() - startedNanos < Duration.ofSeconds(10).toNanos());
+    }
+
+    @Test
+    public void testCapsOutput() throws IOException {
+        assertFailsWith("exceeds 65536 bytes", this.script("large.sh", "yes | head -c 100000"));
+    }
+
+    private void assertFailsWith(final String message, final String command) {
+        final SdkClientException ex = assertThrows(SdkClientException.class, () -> this.provider(command).getCredentials());
+        assertTrue(ex.getMessage().contains(message), ex.getMessage());
+    }
+
+    private ProcessCredentialsProvider provider(final String command) {
+        final ConfigMapperFactory factory = ConfigMapperFactory.withDefault();
+        final TestTask task = factory.createConfigMapper().map(factory.newConfigSource(), TestTask.class);
+        return new ProcessCredentialsProvider(command, Duration.ofSeconds(2), RefreshSettings.of(task, ""));
+    }
+
+    // Each script has its own path, and therefore its own command, so that credentials shared per command do not leak between tests.
+    private String script(final String name, final String... lines) throws IOException {
+        final Path file = this.directory.resolve(name);
+        Files.write(file, ("#!/bin/sh\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        return "sh '" + file + "'";
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    @TempDir
+    Path directory;
+}
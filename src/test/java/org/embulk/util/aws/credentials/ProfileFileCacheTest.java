@@ -0,0 +1,77 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ProfileFileCacheTest {
+    @Test
+    public void testParsesOnlyOnceUntilModified() throws IOException {
+        final Path file = this.directory.resolve("credentials");
+        writeProfile(file, "AKIAFIRST0000000", 1_000_000L);
+
+        assertSame(ProfileFileCache.get(file), ProfileFileCache.get(file));
+        final Object first = ProfileFileCache.get(file);
+        writeProfile(file, "AKIASECOND000000", 2_000_000L);
+        assertNotSame(first, ProfileFileCache.get(file));
+    }
+
+    @Test
+    public void testPicksUpEditWithinCheckInterval() throws Exception {
+        final Path file = this.directory.resolve("credentials");
+        writeProfile(file, "AKIAFIRST0000000", 1_000_000L);
+
+        final ConfigSource config = FACTORY.newConfigSource()
+                .set("auth_method", "profile")
+                .set("profile_file", file.toString());
+        final AWSCredentialsProvider provider = AwsCredentials.getAWSCredentialsProvider(
+                FACTORY.createConfigMapper().map(config, TestTask.class));
+        try {
+            assertEquals("AKIAFIRST0000000", provider.getCredentials().getAWSAccessKeyId());
+
+            // The same size, but a new modified time.
+            writeProfile(file, "AKIASECOND000000", 2_000_000L);
+            waitForChangeCheck();
+            assertEquals("AKIASECOND000000", provider.getCredentials().getAWSAccessKeyId());
+
+            // The same modified time, but a new size.
+            writeProfile(file, "AKIATHIRD00000000000", 2_000_000L);
+            waitForChangeCheck();
+            assertEquals("AKIATHIRD00000000000", provider.getCredentials().getAWSAccessKeyId());
+        } finally {
+            if (provider instanceof Closeable) {
+                ((Closeable) provider).close();
+            }
+        }
+    }
+
+    private static void writeProfile(final Path file, final String accessKeyId, final long modifiedMillis) throws IOException {
+        final String content = "[default]\naws_access_key_id = " + accessKeyId + "\naws_secret_access_key = secret\n";
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    }
+
+    private static void waitForChangeCheck() throws InterruptedException {
+        Thread.sleep(ReloadingCredentialsProvider.CHANGE_CHECK_INTERVAL_NANOS / 1_000_000L + 100L);
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private static final ConfigMapperFactory FACTORY = ConfigMapperFactory.withDefault();
+
+    @TempDir
+    Path directory;
+}
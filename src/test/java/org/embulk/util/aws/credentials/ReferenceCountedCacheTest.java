@@ -0,0 +1,132 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ReferenceCountedCacheTest {
+    @Test
+    public void testSharesValueAndCountsReferences() {
+        final List<Object> disposed = Collections.synchronizedList(new ArrayList<>());
+        final ReferenceCountedCache<String, Object> cache = new ReferenceCountedCache<>(disposed::add);
+        final AtomicInteger created = new AtomicInteger();
+
+        final Object first = cache.acquire("key", () -> create(created));
+        final Object second = cache.acquire("key", () -> create(created));
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        assertEquals(2, cache.getReferenceCount("key"));
+
+        cache.release("key");
+        assertEquals(1, cache.getReferenceCount("key"));
+        assertTrue(disposed.isEmpty());
+
+        cache.release("key");
+        assertEquals(0, cache.getReferenceCount("key"));
+        assertEquals(Collections.singletonList(first), disposed);
+
+        // Released to zero, the next user creates a new value.
+        final Object third = cache.acquire("key", () -> create(created));
+        assertNotSame(first, third);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testConcurrentAcquireOfSameKeyCreatesOnce() throws Exception {
+        final ReferenceCountedCache<String, Object> cache = new ReferenceCountedCache<>(value -> { });
+        final AtomicInteger created = new AtomicInteger();
+        final List<Object> values = Collections.synchronizedList(new ArrayList<>());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 640; i++) {
+                futures.add(executor.submit(() -> values.add(cache.acquire("key", () -> {
+                    created.incrementAndGet();
+                    sleep(50);
+                    return new Object();
+                }))));
+            }
+            for (final Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, created.get());
+        assertEquals(640, cache.getReferenceCount("key"));
+        for (final Object value : values) {
+            assertSame(values.get(0), value);
+        }
+    }
+
+    @Test
+    public void testSlowCreationDoesNotBlockOtherKeys() throws Exception {
+        final ReferenceCountedCache<String, Object> cache = new ReferenceCountedCache<>(value -> { });
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+
+        final CompletableFuture<Object> slow = CompletableFuture.supplyAsync(() -> cache.acquire("slow", () -> {
+            creating.countDown();
+            await(unblock);
+            return "slow";
+        }));
+        assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+        // Completes while the creation of the other key is blocked.
+        assertEquals("fast", cache.acquire("fast", () -> "fast"));
+
+        unblock.countDown();
+        assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedCreationIsRetriedByNextUser() {
+        final ReferenceCountedCache<String, Object> cache = new ReferenceCountedCache<>(value -> { });
+
+        final IllegalStateException ex = assertThrows(IllegalStateException.class, () -> cache.acquire("key", () -> {
+            throw new IllegalStateException("unavailable");
+        }));
+        assertEquals("unavailable", ex.getMessage());
+        assertEquals(0, cache.getReferenceCount("key"));
+
+        assertEquals("available", cache.acquire("key", () -> "available"));
+        assertEquals(1, cache.getReferenceCount("key"));
+    }
+
+    private static Object create(final AtomicInteger created) {
+        created.incrementAndGet();
+        return new Object();
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
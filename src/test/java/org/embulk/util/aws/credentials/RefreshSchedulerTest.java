@@ -0,0 +1,50 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class RefreshSchedulerTest {
+    @Test
+    public void testRunsRefreshWithTarget() throws Exception {
+        final RefreshScheduler scheduler = new RefreshScheduler("refresh-scheduler-test");
+        final CompletableFuture<Object> refreshed = new CompletableFuture<>();
+
+        scheduler.schedule(this.kept, refreshed::complete, Duration.ZERO);
+
+        assertSame(this.kept, refreshed.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRemovesRefreshOfCollectedTarget() throws Exception {
+        final RefreshScheduler scheduler = new RefreshScheduler("refresh-scheduler-test");
+        final WeakReference<Object> dropped = scheduleDropped(scheduler);
+        scheduler.schedule(this.kept, target -> { }, Duration.ofHours(1));
+        assertEquals(2, scheduler.getPendingCount());
+
+        final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (scheduler.getPendingCount() > 1 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+            scheduler.expungeCollected();
+        }
+
+        assertTrue(dropped.get() == null, "The target dropped is still reachable.");
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    private static WeakReference<Object> scheduleDropped(final RefreshScheduler scheduler) {
+        final Object target = new Object();
+        scheduler.schedule(target, dropped -> { }, Duration.ofHours(1));
+        return new WeakReference<>(target);
+    }
+
+    // Held by the test so that it is not garbage-collected during the test.
+    private final Object kept = new Object();
+}
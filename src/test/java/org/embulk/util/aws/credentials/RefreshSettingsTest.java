@@ -0,0 +1,52 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.embulk.config.ConfigException;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.Test;
+
+public class RefreshSettingsTest {
+    @Test
+    public void testDefaults() {
+        final RefreshSettings settings = RefreshSettings.of(task(CONFIG_MAPPER_FACTORY.newConfigSource()), "");
+
+        assertFalse(settings.isAsync());
+        assertFalse(settings.isStaleWhileRevalidate());
+        assertEquals(Duration.ofSeconds(300), settings.getRefreshAhead());
+        assertEquals(Duration.ofSeconds(60), settings.getRefreshJitter());
+    }
+
+    @Test
+    public void testOverridesKeepTheOtherSettings() {
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource()
+                .set("refresh_ahead_seconds", 120)
+                .set("refresh_jitter_seconds", 10);
+        final RefreshSettings settings = RefreshSettings.of(task(config), "").withAsync(true).withStaleWhileRevalidate(true);
+
+        assertTrue(settings.isAsync());
+        assertTrue(settings.isStaleWhileRevalidate());
+        assertEquals(Duration.ofSeconds(120), settings.getRefreshAhead());
+        assertEquals(Duration.ofSeconds(10), settings.getRefreshJitter());
+    }
+
+    @Test
+    public void testUnknownRefreshMode() {
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource().set("refresh_mode", "eager");
+        assertThrows(ConfigException.class, () -> RefreshSettings.of(task(config), "aws_"));
+    }
+
+    private static TestTask task(final ConfigSource config) {
+        return CONFIG_MAPPER_FACTORY.createConfigMapper().map(config, TestTask.class);
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -0,0 +1,67 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+public class ReloadingCredentialsProviderTest {
+    @Test
+    public void testFailedFirstLoadIsThrown() {
+        this.source.set(() -> {
+            throw new IllegalArgumentException("No credentials.");
+        });
+        assertThrows(IllegalArgumentException.class, this::create);
+    }
+
+    @Test
+    public void testFailedReloadKeepsPreviousCredentials() throws Exception {
+        this.source.set(() -> new BasicAWSCredentials("AKIAFIRST", "first-secret-access-key"));
+        final ReloadingCredentialsProvider provider = this.create();
+        assertEquals("AKIAFIRST", provider.getCredentials().getAWSAccessKeyId());
+
+        // A half-written file.
+        this.stamp.set("half-written");
+        this.source.set(() -> {
+            throw new IllegalArgumentException("Unable to load credentials.");
+        });
+        waitForChangeCheck();
+        assertEquals("AKIAFIRST", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(2, this.loads.get());
+        provider.refresh();
+        assertEquals("AKIAFIRST", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(3, this.loads.get());
+
+        // Not re-read until the file changes again.
+        waitForChangeCheck();
+        assertEquals("AKIAFIRST", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(3, this.loads.get());
+
+        this.stamp.set("saved");
+        this.source.set(() -> new BasicAWSCredentials("AKIASECOND", "second-secret-access-key"));
+        waitForChangeCheck();
+        assertEquals("AKIASECOND", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(4, this.loads.get());
+    }
+
+    private ReloadingCredentialsProvider create() {
+        return new ReloadingCredentialsProvider("test", () -> {
+            this.loads.incrementAndGet();
+            return this.source.get().get();
+        }, Optional.of(this.stamp::get));
+    }
+
+    private static void waitForChangeCheck() throws InterruptedException {
+        Thread.sleep(ReloadingCredentialsProvider.CHANGE_CHECK_INTERVAL_NANOS / 1_000_000L + 100L);
+    }
+
+    private final AtomicReference<Supplier<AWSCredentials>> source = new AtomicReference<>();
+    private final AtomicReference<Object> stamp = new AtomicReference<>("first");
+    private final AtomicInteger loads = new AtomicInteger();
+}
@@ -0,0 +1,58 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class SecurityTokenServiceClientsTest {
+    @Test
+    public void testRetriesThrottlingAndServerErrors() {
+        assertTrue(SecurityTokenServiceClients.isRetryable(serviceException(400, "Throttling")));
+        assertTrue(SecurityTokenServiceClients.isRetryable(serviceException(503, "ServiceUnavailable")));
+        assertFalse(SecurityTokenServiceClients.isRetryable(serviceException(403, "AccessDenied")));
+    }
+
+    @Test
+    public void testRetriesIoFailuresAndTimeouts() {
+        assertTrue(SecurityTokenServiceClients.isRetryable(
+                new SdkClientException("Unable to execute HTTP request: Read timed out", new SocketTimeoutException("Read timed out"))));
+        assertTrue(SecurityTokenServiceClients.isRetryable(new ClientExecutionTimeoutException()));
+    }
+
+    @Test
+    public void testDoesNotRetryOtherClientErrors() {
+        assertFalse(SecurityTokenServiceClients.isRetryable(new SdkClientException("Unable to unmarshall response.")));
+        assertFalse(SecurityTokenServiceClients.isRetryable(
+                new SdkClientException("Unable to sign the request.", new IllegalArgumentException("Invalid region."))));
+    }
+
+    @Test
+    public void testRateLimitsAreSharedOnlyWithSameSettings() {
+        final String roleArn = "arn:aws:iam::000000000000:role/embulk-rate-limit";
+        final TokenBucket bucket = SecurityTokenServiceClients.rateLimitOf(roleArn, settings("https://sts.example.com", 10.0, 10));
+
+        assertSame(bucket, SecurityTokenServiceClients.rateLimitOf(roleArn, settings("https://sts.example.com", 10.0, 10)));
+        assertNotSame(bucket, SecurityTokenServiceClients.rateLimitOf(roleArn, settings("https://sts.example.com", 1.0, 10)));
+        assertNotSame(bucket, SecurityTokenServiceClients.rateLimitOf(roleArn, settings("https://sts.example.com", 10.0, 1)));
+        assertNotSame(bucket, SecurityTokenServiceClients.rateLimitOf(roleArn, settings("https://sts.example.org", 10.0, 10)));
+    }
+
+    private static SecurityTokenServiceClients.Settings settings(final String endpoint, final double rateLimit, final int burst) {
+        return new SecurityTokenServiceClients.Settings(Optional.of(endpoint), Optional.empty(), 1000, 1000, rateLimit, burst, 3);
+    }
+
+    private static AmazonServiceException serviceException(final int statusCode, final String errorCode) {
+        final AmazonServiceException exception = new AmazonServiceException(errorCode);
+        exception.setStatusCode(statusCode);
+        exception.setErrorCode(errorCode);
+        return exception;
+    }
+}
@@ -0,0 +1,30 @@
+package org.embulk.util.aws.credentials;
+
+import java.util.Map;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+
+/**
+ * Builds {@link AwsCredentialsTask} for tests and benchmarks without Embulk's runtime.
+ *
+ * <p>Values are given by the config names, such as {@code auth_method}. The other options have their defaults, as they are
+ * mapped from a configuration by Embulk.
+ */
+final class TestTasks {
+    private TestTasks() {
+        // No instantiation.
+    }
+
+    static AwsCredentialsTask of(final Map<String, Object> values) {
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        for (final Map.Entry<String, Object> value : values.entrySet()) {
+            config.set(value.getKey(), value.getValue());
+        }
+        return CONFIG_MAPPER_FACTORY.createConfigMapper().map(config, MappedTask.class);
+    }
+
+    interface MappedTask extends Task, AwsCredentialsTask {}
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
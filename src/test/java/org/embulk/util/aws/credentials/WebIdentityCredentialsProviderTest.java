@@ -0,0 +1,126 @@
+package org.embulk.util.aws.credentials;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.amazonaws.services.securitytoken.AbstractAWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityRequest;
+import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityResult;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.Task;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WebIdentityCredentialsProviderTest {
+    @Test
+    public void testReadsTokenFile() throws IOException {
+        final Path tokenFile = this.directory.resolve("token");
+        writeToken(tokenFile, "first-token\n", 1_000_000L);
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService();
+        final WebIdentityCredentialsProvider provider = provider(sts, tokenFile);
+
+        assertEquals("ASIA1", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(Collections.singletonList("first-token"), sts.tokens);
+    }
+
+    @Test
+    public void testReadsTokenFileAgainWhenModified() throws IOException {
+        final Path tokenFile = this.directory.resolve("token");
+        writeToken(tokenFile, "first-token", 1_000_000L);
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService();
+        final WebIdentityCredentialsProvider provider = provider(sts, tokenFile);
+        provider.getCredentials();
+
+        // Rotated with the same length, as the kubelet does.
+        writeToken(tokenFile, "secondtoken", 2_000_000L);
+        provider.refresh();
+        assertEquals("ASIA2", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(Arrays.asList("first-token", "secondtoken"), sts.tokens);
+    }
+
+    @Test
+    public void testCallsOnceUnderConcurrentRequests() throws Exception {
+        final Path tokenFile = this.directory.resolve("token");
+        writeToken(tokenFile, "token", 1_000_000L);
+        final FakeSecurityTokenService sts = new FakeSecurityTokenService();
+        final WebIdentityCredentialsProvider provider = provider(sts, tokenFile);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 640; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return provider.getCredentials().getAWSAccessKeyId();
+                }));
+            }
+            start.countDown();
+            for (final Future<String> future : futures) {
+                assertEquals("ASIA1", future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, sts.tokens.size());
+    }
+
+    private static WebIdentityCredentialsProvider provider(final FakeSecurityTokenService sts, final Path tokenFile) {
+        final ConfigMapperFactory factory = ConfigMapperFactory.withDefault();
+        final TestTask task = factory.createConfigMapper().map(factory.newConfigSource(), TestTask.class);
+        return new WebIdentityCredentialsProvider(
+                SecurityTokenServiceClients.unpooled(new SecurityTokenServiceClients.Settings(Optional.empty(), Optional.empty(), 10000, 50000, 10.0, 20, 5), sts),
+                "arn:aws:iam::123456789012:role/test", "embulk", tokenFile, 3600, RefreshSettings.of(task, ""));
+    }
+
+    private static void writeToken(final Path file, final String token, final long modifiedMillis) throws IOException {
+        Files.write(file, token.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    }
+
+    private interface TestTask extends Task, AwsCredentialsTask {}
+
+    private static final class FakeSecurityTokenService extends AbstractAWSSecurityTokenService {
+        @Override
+        public AssumeRoleWithWebIdentityResult assumeRoleWithWebIdentity(final AssumeRoleWithWebIdentityRequest request) {
+            final int call;
+            synchronized (this.tokens) {
+                this.tokens.add(request.getWebIdentityToken());
+                call = this.tokens.size();
+            }
+            try {
+                Thread.sleep(100L);  // Keeps the call in flight while the other threads request credentials.
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new AssumeRoleWithWebIdentityResult().withCredentials(new Credentials(
+                    "ASIA" + call, "secret" + call, "token" + call, Date.from(Instant.now().plus(1, ChronoUnit.HOURS))));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        private final List<String> tokens = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @TempDir
+    Path directory;
+}